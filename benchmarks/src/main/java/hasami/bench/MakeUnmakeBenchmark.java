@@ -0,0 +1,76 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami.bench;
+
+import hasami.Board;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * makeMove/undoMove round trips of every legal move of the reference positions.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MakeUnmakeBenchmark {
+
+	private Board[] boards;
+	private int[][] moves;
+	private int[] counts;
+	
+	@Setup
+	public void setup(){
+		boards = ReferencePositions.create();
+		moves = new int[boards.length][boards[0].getMaxMoves()];
+		counts = new int[boards.length];
+		for(int i=0; i < boards.length; i++){
+			counts[i] = boards[i].generateMoves(moves[i]);
+		}
+	}
+	
+	@Benchmark
+	public long makeUndo(){
+		long hash = 0;
+		for(int i=0; i < boards.length; i++){
+			Board board = boards[i];
+			for(int j=0; j < counts[i]; j++){
+				board.makeMove(moves[i][j]);
+				hash ^= board.getHash();
+				board.undoMove(moves[i][j]);
+			}
+		}
+		return hash;
+	}
+	
+}//end class.
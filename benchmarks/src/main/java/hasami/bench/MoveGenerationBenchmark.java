@@ -0,0 +1,79 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami.bench;
+
+import hasami.Board;
+import hasami.HasamiMove;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Move generation over the reference positions: the packed generator used
+ * by the search and the HasamiMove list used by the CLI.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveGenerationBenchmark {
+
+	private Board[] boards;
+	private int[] moves;
+	
+	@Setup
+	public void setup(){
+		boards = ReferencePositions.create();
+		moves = new int[boards[0].getMaxMoves()];
+	}
+	
+	@Benchmark
+	public int generateMoves(){
+		int total = 0;
+		for(Board board : boards){
+			total += board.generateMoves(moves);
+		}
+		return total;
+	}
+	
+	@Benchmark
+	public int getMoves(){
+		int total = 0;
+		for(Board board : boards){
+			List<HasamiMove> list = board.getMoves();
+			total += list.size();
+		}
+		return total;
+	}
+	
+}//end class.
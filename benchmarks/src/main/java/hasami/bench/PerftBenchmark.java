@@ -0,0 +1,88 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami.bench;
+
+import hasami.Board;
+import hasami.Perft;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Raw generator throughput: perft of the reference positions, sequential
+ * and split over a fork-join pool with one worker per core.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PerftBenchmark {
+
+	@Param({"3"})
+	public int depth;
+	
+	private Board[] boards;
+	private ForkJoinPool pool;
+	
+	@Setup
+	public void setup(){
+		boards = ReferencePositions.create();
+		pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+	}
+	
+	@TearDown
+	public void tearDown(){
+		pool.shutdown();
+	}
+	
+	@Benchmark
+	public long perft(){
+		long leaves = 0;
+		for(Board board : boards){
+			leaves += Perft.perft(board, depth);
+		}
+		return leaves;
+	}
+	
+	@Benchmark
+	public long parallelPerft(){
+		long leaves = 0;
+		for(Board board : boards){
+			leaves += Perft.parallelPerft(board, depth, pool);
+		}
+		return leaves;
+	}
+	
+}//end class.
@@ -0,0 +1,63 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami.bench;
+
+import hasami.Board;
+
+import java.util.Random;
+
+/**
+ * Fixed set of positions shared by the benchmarks: the start position and
+ * positions reached by seeded random play, so every run measures the same boards.
+ */
+public final class ReferencePositions {
+
+	public static final int BOARD_SIZE = 9;
+	public static final long SEED = 20101010L;
+	
+	private static final int[] PLIES = {0, 10, 30, 60};
+	
+	private ReferencePositions(){
+	}
+	
+	/**
+	 * Builds new copies of the reference positions, with seeded evaluation noise.
+	 */
+	public static Board[] create(){
+		Board[] boards = new Board[PLIES.length];
+		for(int i=0; i < PLIES.length; i++){
+			boards[i] = play(PLIES[i], SEED + i);
+		}
+		return boards;
+	}
+	
+	public static Board play(int plies, long seed){
+		Board board = new Board(BOARD_SIZE);
+		board.setSeed(seed);
+		Random random = new Random(seed);
+		int[] moves = new int[board.getMaxMoves()];
+		for(int ply=0; ply < plies && !board.isGameOver(); ply++){
+			int count = board.generateMoves(moves);
+			board.makeMove(moves[random.nextInt(count)]);
+		}
+		return board;
+	}
+	
+}//end class.
@@ -0,0 +1,88 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami.bench;
+
+import hasami.Board;
+import hasami.Engine;
+import hasami.HasamiMove;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fixed-depth Engine.machineMove from each reference position, starting
+ * from an empty transposition table. The nodes counter gives nodes per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+
+	@Param({"2", "3", "4"})
+	public int depth;
+	
+	@Param({"0", "1", "2", "3"})
+	public int position;
+	
+	private Engine engine;
+	private Board board;
+	
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Nodes {
+		public long nodes;
+	}
+	
+	@Setup(Level.Trial)
+	public void setup(){
+		engine = new Engine(depth);
+		board = ReferencePositions.create()[position];
+	}
+	
+	@Setup(Level.Invocation)
+	public void reset(){
+		engine.newGame();
+		board.setSeed(ReferencePositions.SEED);
+	}
+	
+	@Benchmark
+	public HasamiMove machineMove(Nodes counter){
+		HasamiMove move = engine.machineMove(board, board.currentPlayer());
+		counter.nodes += engine.getLastResult().nodes;
+		return move;
+	}
+	
+}//end class.
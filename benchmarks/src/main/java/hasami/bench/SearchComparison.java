@@ -0,0 +1,136 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami.bench;
+
+import hasami.Board;
+import hasami.Engine;
+import hasami.HasamiMove;
+import hasami.SearchOptions;
+import hasami.Tournament;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares two engine configurations, A and B: nodes and time to a fixed
+ * depth on the reference positions, then a match between them from seeded
+ * random openings with colours alternating.
+ *
+ * Usage: SearchComparison [depth=5] [games=10] [plies=200] [-a name=value...] [-b name=value...]
+ * where the names are SearchOptions fields, e.g. -a nullMove=false -b nullMove=true.
+ */
+public class SearchComparison {
+
+	private static final int OPENING_PLIES = 4;
+	
+	private int depth = 5;
+	private int games = 10;
+	private int maxPlies = 200;
+	private final Tournament tournament = new Tournament();
+	private final SearchOptions a = tournament.a.options;
+	private final SearchOptions b = tournament.b.options;
+	
+	public static void main(String[] args) throws IOException, InterruptedException {
+		SearchComparison comparison = new SearchComparison();
+		comparison.parse(args);
+		comparison.compareNodes();
+		comparison.playMatch();
+	}
+	
+	private void parse(String[] args) {
+		List<String> settings = new ArrayList<String>();
+		SearchOptions target = null;
+		for(String arg : args){
+			if(arg.equals("-a") || arg.equals("-b")){
+				apply(target, settings);
+				target = arg.equals("-a") ? a : b;
+			}else if(target != null){
+				settings.add(arg);
+			}else if(arg.startsWith("depth=")){
+				depth = Integer.parseInt(arg.substring(6));
+			}else if(arg.startsWith("games=")){
+				games = Integer.parseInt(arg.substring(6));
+			}else if(arg.startsWith("plies=")){
+				maxPlies = Integer.parseInt(arg.substring(6));
+			}else{
+				throw new IllegalArgumentException("Unknown argument: "+arg);
+			}
+		}
+		apply(target, settings);
+		System.out.println("A: "+a);
+		System.out.println("B: "+b);
+	}
+	
+	private static void apply(SearchOptions target, List<String> settings) {
+		if(target != null)
+			target.setAll(settings.toArray(new String[settings.size()]));
+		settings.clear();
+	}
+	
+	private void compareNodes() {
+		Engine engineA = new Engine(depth, a);
+		Engine engineB = new Engine(depth, b);
+		long[] nodes = new long[2];
+		long[] nanos = new long[2];
+		Board[] boards = ReferencePositions.create();
+		System.out.println("Position  nodes A  ms A  move A  |  nodes B  ms B  move B");
+		for(int i=0; i < boards.length; i++){
+			StringBuilder line = new StringBuilder("  "+i+"  ");
+			Engine[] engines = {engineA, engineB};
+			for(int side=0; side < 2; side++){
+				Board board = new Board(boards[i]);
+				board.setSeed(ReferencePositions.SEED);
+				engines[side].newGame();
+				long start = System.nanoTime();
+				HasamiMove move = engines[side].machineMove(board, board.currentPlayer());
+				long elapsed = System.nanoTime() - start;
+				nodes[side] += engines[side].getLastResult().nodes;
+				nanos[side] += elapsed;
+				line.append(engines[side].getLastResult().nodes).append("  ").append(elapsed/1000000).append("  ").append(move.toString().trim());
+				line.append(side == 0 ? "  |  " : "");
+			}
+			System.out.println(line);
+		}
+		System.out.println("Total nodes A "+nodes[0]+", B "+nodes[1]+" (B/A "+String.format("%.3f", (double) nodes[1]/Math.max(1, nodes[0]))+")");
+		System.out.println("Total ms    A "+nanos[0]/1000000+", B "+nanos[1]/1000000);
+		engineA.shutdown();
+		engineB.shutdown();
+	}
+	
+	private void playMatch() throws IOException, InterruptedException {
+		if(games <= 0)
+			return;
+		tournament.a.depth = depth;
+		tournament.b.depth = depth;
+		tournament.openingPlies = OPENING_PLIES;
+		tournament.maxPlies = maxPlies;
+		tournament.seed = ReferencePositions.SEED;
+		StringWriter results = new StringWriter();
+		tournament.run(games, Runtime.getRuntime().availableProcessors(), results);
+		for(String line : results.toString().split("\n")){
+			String[] fields = line.split("\t");
+			System.out.println("Game "+(Integer.parseInt(fields[0])+1)+": A "+(fields[1].equals("A") ? "white" : "black")+", "+fields[2]+" ("+fields[3]+")");
+		}
+		System.out.println(tournament.summary());
+	}
+	
+}//end class.
@@ -0,0 +1,305 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Analyses many positions over a pool of Engines sharing one transposition
+ * table. Positions are read into a bounded queue, so reading waits while the
+ * workers are busy, and each result is handed to the Listener as soon as its
+ * search ends, so memory stays bounded whatever the number of positions.
+ */
+public class BatchAnalyzer {
+
+	/**
+	 * Receives the results, one call at a time, in the order the searches end.
+	 * A slow listener holds up the workers, which in turn hold up the reading.
+	 */
+	public interface Listener {
+		void positionAnalysed(long index, Board position, SearchResult result) throws IOException;
+		
+		/**
+		 * The position numbered index could not be analysed: it is not a valid
+		 * position, and then position is null, or its search failed.
+		 */
+		void positionFailed(long index, Board position, RuntimeException error) throws IOException;
+	}
+	
+	/**
+	 * A position waiting in the queue, with its number in the input.
+	 */
+	private static final class Task {
+		final long index;
+		final Board board;
+		
+		Task(long index, Board board){
+			this.index = index;
+			this.board = board;
+		}
+	}
+	
+	private static final Task END = new Task(-1, null);
+	
+	private final SearchOptions options;
+	private final int workers;
+	private final TranspositionTable table;
+	/** Fixed search depth, used when moveTime is 0. */
+	public int depth = 4;
+	/** Milliseconds per position, or 0 to search to depth. */
+	public long moveTime;
+	
+	/**
+	 * A pool of workers Engines with options, sharing a table of options.tableMegabytes.
+	 */
+	public BatchAnalyzer(int workers, SearchOptions options){
+		this.options = options.copy();
+		this.workers = Math.max(1, workers);
+		table = new TranspositionTable(this.options.tableMegabytes);
+	}
+	
+	/**
+	 * Analyses the positions written by PositionCodec.write() until the end of in.
+	 * @return the number of positions read, the failed ones included.
+	 */
+	public long analyse(final InputStream in, Listener listener) throws IOException, InterruptedException {
+		return analyse(new Source() {
+			public Board next() throws IOException {
+				return PositionCodec.read(in);
+			}
+		}, listener);
+	}
+	
+	/**
+	 * Analyses every position of every game in log, the final ones included.
+	 * Each game is replayed once; a corrupt record fails one position and
+	 * skips the rest of its game.
+	 */
+	public long analyse(final GameLog log, Listener listener) throws IOException, InterruptedException {
+		return analyse(new Source() {
+			private long game;
+			private int ply;
+			private Board board;
+			private int[] moves;
+			public Board next() {
+				if(game < log.size() && ply > log.plies(game)){
+					game++;
+					ply = 0;
+				}
+				if(game >= log.size())
+					return null;
+				try {
+					if(ply == 0){
+						board = log.position(game, 0);
+						if(moves == null || moves.length < board.getMaxMoves())
+							moves = new int[board.getMaxMoves()];
+					}else{
+						board.makeMove(PositionCodec.decodeMove(board, (short) log.move(game, ply-1), moves));
+					}
+				} catch (IllegalArgumentException e) {
+					//The rest of the game cannot be replayed.
+					ply = log.plies(game) + 1;
+					throw e;
+				}
+				ply++;
+				return new Board(board);
+			}
+		}, listener);
+	}
+	
+	private interface Source {
+		Board next() throws IOException;
+	}
+	
+	private long analyse(Source source, final Listener listener) throws IOException, InterruptedException {
+		table.clear();
+		table.newSearch();
+		final BlockingQueue<Task> queue = new ArrayBlockingQueue<Task>(4*workers);
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		final Object results = new Object();
+		for(int t=0; t < workers; t++){
+			futures.add(pool.submit(new Callable<Void>() {
+				public Void call() throws IOException, InterruptedException {
+					Engine engine = new Engine(depth, options, table);
+					try {
+						for(Task task=queue.take(); task != END; task=queue.take()){
+							Board board = task.board;
+							SearchResult result;
+							try {
+								result = moveTime > 0
+										? engine.search(board, board.currentPlayer(), Searcher.MAX_PLY-1, moveTime)
+										: engine.search(board, board.currentPlayer(), depth, 0);
+							} catch (RuntimeException e) {
+								synchronized(results){
+									listener.positionFailed(task.index, board, e);
+								}
+								continue;
+							}
+							synchronized(results){
+								listener.positionAnalysed(task.index, board, result);
+							}
+						}
+					} finally {
+						engine.shutdown();
+					}
+					return null;
+				}
+			}));
+		}
+		pool.shutdown();
+		
+		long count = 0;
+		try {
+			while(true){
+				Board board;
+				try {
+					board = source.next();
+				} catch (IllegalArgumentException e) {
+					//A corrupt record: the source has moved past it.
+					synchronized(results){
+						listener.positionFailed(count++, null, e);
+					}
+					continue;
+				}
+				if(board == null)
+					break;
+				Task task = new Task(count++, board);
+				while(!queue.offer(task, 100, TimeUnit.MILLISECONDS)){
+					checkWorkers(futures);
+				}
+			}
+			for(int t=0; t < workers; t++){
+				while(!queue.offer(END, 100, TimeUnit.MILLISECONDS)){
+					checkWorkers(futures);
+				}
+			}
+			for(Future<?> future : futures){
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new RuntimeException("Analysis failed", e.getCause());
+		} finally {
+			//Interrupts the workers still waiting when reading failed.
+			pool.shutdownNow();
+		}
+		return count;
+	}
+	
+	/**
+	 * Usage: BatchAnalyzer input output [-log] [-workers n] [-depth n] [-movetime ms] [name=value...]
+	 * The input holds encoded positions, or is a GameLog with -log. Each result is
+	 * written as one line: index, best move, score, depth and nodes, tab-separated;
+	 * a position that failed as its index and the error.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length < 2){
+			System.out.println("Usage: BatchAnalyzer input output [-log] [-workers n] [-depth n] [-movetime ms] [name=value...]");
+			return;
+		}
+		boolean fromLog = false;
+		int workers = Runtime.getRuntime().availableProcessors();
+		int depth = 4;
+		long moveTime = 0;
+		SearchOptions options = new SearchOptions();
+		for(int i=2; i < args.length; i++){
+			if(args[i].equals("-log"))
+				fromLog = true;
+			else if(args[i].equals("-workers"))
+				workers = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-depth"))
+				depth = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-movetime"))
+				moveTime = Long.parseLong(args[++i]);
+			else if(args[i].indexOf('=') > 0)
+				options.setAll(args[i]);
+			else
+				throw new IllegalArgumentException("Unknown option: "+args[i]);
+		}
+		BatchAnalyzer analyzer = new BatchAnalyzer(workers, options);
+		analyzer.depth = depth;
+		analyzer.moveTime = moveTime;
+		
+		final Writer output = new BufferedWriter(new FileWriter(args[1]));
+		Listener listener = new Listener() {
+			public void positionAnalysed(long index, Board position, SearchResult result) throws IOException {
+				output.write(index+"\t"+(result.bestMove == null ? "-" : result.bestMove.toString().trim())
+						+"\t"+String.format("%.3f", result.score)+"\t"+result.depth+"\t"+result.nodes+"\n");
+			}
+			
+			public void positionFailed(long index, Board position, RuntimeException error) throws IOException {
+				output.write(index+"\terror\t"+error.getMessage()+"\n");
+			}
+		};
+		long start = System.nanoTime();
+		long count;
+		try {
+			if(fromLog){
+				GameLog log = new GameLog(new File(args[0]));
+				try {
+					count = analyzer.analyse(log, listener);
+				} finally {
+					log.close();
+				}
+			}else{
+				InputStream in = new BufferedInputStream(new FileInputStream(args[0]));
+				try {
+					count = analyzer.analyse(in, listener);
+				} finally {
+					in.close();
+				}
+			}
+		} finally {
+			output.close();
+		}
+		long millis = Math.max(1, (System.nanoTime() - start)/1000000);
+		System.out.println(count+" positions in "+millis+" ms ("+count*1000/millis+" positions/s)");
+	}
+	
+	/**
+	 * Throws the failure of a worker that stopped, as nothing would take from the queue.
+	 */
+	private static void checkWorkers(List<Future<?>> futures) throws ExecutionException, InterruptedException {
+		for(Future<?> future : futures){
+			if(future.isDone())
+				future.get();
+		}
+	}
+	
+}//end class.
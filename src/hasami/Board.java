@@ -21,108 +21,568 @@
 package hasami;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
+import java.util.Random;
 
 public class Board {
 
 	public enum Color {BLACK, WHITE};
 
-	private Color[][] board;
+	//-- Bitboard layout: square (lin, col) is bit lin*boardSize+col of a two-long mask. --//
+	private static final int WORDS = 2;
+	public static final int MAX_SIZE = 11;
+	
+	//-- Packed moves: bits 0-6 from square, 7-13 to square, 14+ number of captured pieces. --//
+	public static final int NO_MOVE = 0;
+	private static final int SQUARE_BITS = 7;
+	private static final int SQUARE_MASK = (1 << SQUARE_BITS) - 1;
+	private static final int CAPTURE_SHIFT = 2*SQUARE_BITS;
+	
+	//-- Zobrist keys, fixed seed so that hashes are stable between runs. --//
+	private static final long[][] ZOBRIST = new long[Color.values().length][MAX_SIZE*MAX_SIZE];
+	private static final long ZOBRIST_SIDE;
+	static {
+		Random random = new Random(0x4A5AB1L);
+		for(long[] keys : ZOBRIST){
+			for(int sq=0; sq < keys.length; sq++){
+				keys[sq] = random.nextLong();
+			}
+		}
+		ZOBRIST_SIDE = random.nextLong();
+	}
+	
+	//-- Line patterns: TERNARY maps a line mask to base 3 digits, so own+2*opp indexes a pattern. --//
+	private static final int[] POW3 = new int[MAX_SIZE+1];
+	private static final int[] TERNARY = new int[1 << MAX_SIZE];
+	private static final short[][] CAPTURE_TABLES = new short[MAX_SIZE+1][];
+	static {
+		POW3[0] = 1;
+		for(int i=1; i <= MAX_SIZE; i++){
+			POW3[i] = 3*POW3[i-1];
+		}
+		for(int mask=1; mask < TERNARY.length; mask++){
+			TERNARY[mask] = TERNARY[mask & (mask-1)] + POW3[Integer.numberOfTrailingZeros(mask)];
+		}
+	}
+
+	//-- Neighbourhood patterns: 2 bits per neighbour k, 0 empty, 1+ordinal of the piece's colour, 3 off the board. --//
+	private static final int EMPTY = 0;
+	private static final int OFF_BOARD = 3;
+	private static final int[] NEIGHBOUR_LIN = {-1, -1, -1, 0, 0, 1, 1, 1};
+	private static final int[] NEIGHBOUR_COL = {-1, 0, 1, -1, 1, -1, 0, 1};
+	private static final int[] ORTHOGONAL = {1, 3, 4, 6};
+	private static final int[] DIAGONAL = {0, 2, 5, 7};
+	//-- White minus black terms packed in 16-bit fields, biased by 0x8000 each, so that one addition updates them all. --//
+	private static final long FIELD_BIAS = 0x8000800080008000L;
+	private static final int ATTACK_FIELD = 0;
+	private static final int DEFENCE_FIELD = 16;
+	private static final int THREAT_FIELD = 32;
+	private static final int EDGE_FIELD = 48;
+	private static final int CORNER_FIELD = 0;
+	private static final int ADVANCE_FIELD = 16;
+	//-- PATTERN_TERMS[state][pattern]: the terms of the piece in state with that neighbourhood, negated for black. --//
+	private static final long[][] PATTERN_TERMS = new long[3][1 << 16];
+	//-- PAIR_TERMS[state][pattern]: the change a piece makes to the terms counted by pairs, its neighbours' included. --//
+	private static final long[][] PAIR_TERMS = new long[3][1 << 16];
+	static {
+		for(Color color : Color.values()){
+			int state = color.ordinal()+1;
+			long sign = color == Color.WHITE ? 1 : -1;
+			for(int pattern=0; pattern < PATTERN_TERMS[state].length; pattern++){
+				PATTERN_TERMS[state][pattern] = sign*patternTerms(state, 3-state, pattern);
+				PAIR_TERMS[state][pattern] = sign*pairTerms(state, 3-state, pattern);
+			}
+		}
+	}
+	
+	private static long patternTerms(int own, int enemy, int pattern){
+		int enemies = 0, friends = 0, edges = 0, threats = 0;
+		for(int k : ORTHOGONAL){
+			int state = neighbour(pattern, k);
+			if(state == enemy)
+				enemies++;
+			else if(state == OFF_BOARD)
+				edges++;
+		}
+		for(int k : DIAGONAL){
+			if(neighbour(pattern, k) == own)
+				friends++;
+		}
+		//Sandwich threats: an enemy on one side and room for another on the opposite side.
+		for(int k=1; k <= 3; k+=2){
+			int a = neighbour(pattern, k);
+			int b = neighbour(pattern, 7-k);
+			if((a == enemy && b == EMPTY) || (a == EMPTY && b == enemy))
+				threats++;
+		}
+		//Edge exposure: against the edge with an enemy alongside.
+		int exposed = edges > 0 && enemies > 0 ? 1 : 0;
+		return ((long) enemies << ATTACK_FIELD) | ((long) friends << DEFENCE_FIELD)
+				| ((long) threats << THREAT_FIELD) | ((long) exposed << EDGE_FIELD);
+	}
+	
+	/**
+	 * The attacks and defences of a piece, and the one each enemy beside it
+	 * and each friend diagonal to it gains, the enemies' being negated.
+	 */
+	private static long pairTerms(int own, int enemy, int pattern){
+		int enemies = 0, friends = 0;
+		for(int k : ORTHOGONAL){
+			if(neighbour(pattern, k) == enemy)
+				enemies++;
+		}
+		for(int k : DIAGONAL){
+			if(neighbour(pattern, k) == own)
+				friends++;
+		}
+		long terms = ((long) enemies << ATTACK_FIELD) + ((long) friends << DEFENCE_FIELD);
+		long theirs = -((long) enemies << ATTACK_FIELD) + ((long) friends << DEFENCE_FIELD);
+		return terms + theirs;
+	}
+	
+	private static int neighbour(int pattern, int k){
+		return (pattern >>> 2*k) & 3;
+	}
+	
+	private static int field(long balance, int field){
+		return ((int) (balance >>> field) & 0xFFFF) - 0x8000;
+	}
+
+	private long[][] pieces;
+	//-- The same pieces by line: rows[c][lin] has bit col set, cols[c][col] has bit lin set. --//
+	private int[][] rows;
+	private int[][] cols;
+	private final short[] captureTable;
 	private Color currentPlayer;
 	private final int boardSize;
+	private long hash;
 	
 	//-- Hasami variables --//
 	private int plyCounter;
-	private Set<Position> blackPieces;
-	private Set<Position> whitePieces;
-	private HashMap<Color, Set<Position>> mapPieces;
-	private HashMap<Integer, List<Position>> mapCaptures;
+	private long[] captured;
+	//-- Undo stack: the squares captured at ply p are words WORDS*p .. WORDS*p+1. --//
+	private static final int INITIAL_PLIES = 256;
+	private static final int SEEN_SLOTS = 1024;
+	private long[] undoCaptures;
+	private int[] moveBuffer;
+	//-- Repetitions: the hash before each ply, and how many plies before it were reversible. --//
+	private long[] hashHistory;
+	private int[] reversibleHistory;
+	//-- Plies since the last capture, null move or setPosition(); only these can repeat. --//
+	private int reversible;
+	private int[] nullMoveReversible = new int[8];
+	private int nullMoves;
+	//-- Count of the hashHistory entries per hash slot: a repetition needs a non-zero count. --//
+	private short[] seenHashes;
+	private int repetitionLimit = 3;
+	//-- Evaluation noise; one generator per board so search threads never share it. --//
+	private Random random;
+	//-- The seed of random, and the copies made since, from which the copies' seeds follow. --//
+	private long seed;
+	private int copies;
+	
+	//-- Evaluation terms per colour, updated by placePiece()/removePiece(). --//
+	//-- squareTerms[c][sq]: the corner and advance of a piece on sq, negated for black. --//
+	private final long[][] squareTerms;
+	//-- The square states, 2 bits per square, by row with a border of OFF_BOARD: row lin+1, bits 2*(col+1). --//
+	private int[] cellRows;
+	private long patternBalance = FIELD_BIAS;
+	private long squareBalance = FIELD_BIAS;
+	private EvalWeights weights = EvalWeights.DEFAULT;
+	//-- Whether the threats and edges in patternBalance are kept: only when they are weighted, as the neighbours' patterns must be read. --//
+	private boolean neighbourTerms;
 	
 	public Board(int size){
+		if(size < 2 || size > MAX_SIZE)
+			throw new IllegalArgumentException("Unsupported board size: "+size);
 		this.boardSize = size;
-		board = new Color[size][size];
 		currentPlayer = Color.WHITE;
-		blackPieces = new HashSet<Position>();
-		whitePieces = new HashSet<Position>();
-		mapPieces = new HashMap<Color, Set<Position>> ();
-		mapCaptures = new HashMap<Integer, List<Position>> ();
-		mapPieces.put(Color.WHITE, whitePieces);
-		mapPieces.put(Color.BLACK, blackPieces);
+		pieces = new long[Color.values().length][WORDS];
+		rows = new int[Color.values().length][size];
+		cols = new int[Color.values().length][size];
+		captureTable = captureTable(size);
+		captured = new long[WORDS];
+		undoCaptures = new long[WORDS*INITIAL_PLIES];
+		moveBuffer = new int[getMaxMoves()];
+		hashHistory = new long[INITIAL_PLIES];
+		reversibleHistory = new int[INITIAL_PLIES];
+		seenHashes = new short[SEEN_SLOTS];
+		seed = new Random().nextLong();
+		random = new Random(seed);
+		squareTerms = new long[Color.values().length][size*size];
+		cellRows = new int[size+2];
 		plyCounter = 0;
+		setupNeighbours();
 		setupBoard();
 	}//end constructor().
+	
+	/**
+	 * Copies the position of other, e.g. to give each search thread its own board.
+	 */
+	public Board(Board other){
+		this.boardSize = other.boardSize;
+		currentPlayer = other.currentPlayer;
+		hash = other.hash;
+		pieces = new long[other.pieces.length][];
+		for(int c=0; c < pieces.length; c++){
+			pieces[c] = other.pieces[c].clone();
+		}
+		rows = new int[other.rows.length][];
+		cols = new int[other.cols.length][];
+		for(int c=0; c < rows.length; c++){
+			rows[c] = other.rows[c].clone();
+			cols[c] = other.cols[c].clone();
+		}
+		captureTable = other.captureTable;
+		captured = new long[WORDS];
+		undoCaptures = other.undoCaptures.clone();
+		moveBuffer = new int[getMaxMoves()];
+		hashHistory = other.hashHistory.clone();
+		reversibleHistory = other.reversibleHistory.clone();
+		reversible = other.reversible;
+		nullMoveReversible = other.nullMoveReversible.clone();
+		nullMoves = other.nullMoves;
+		seenHashes = other.seenHashes.clone();
+		repetitionLimit = other.repetitionLimit;
+		//Derived from the original's seed, not its stream, so copies of a seeded
+		//board are reproducible too and copying leaves the original's noise alone.
+		seed = other.seed + ++other.copies * 0x9E3779B97F4A7C15L;
+		random = new Random(seed);
+		squareTerms = other.squareTerms;
+		cellRows = other.cellRows.clone();
+		patternBalance = other.patternBalance;
+		neighbourTerms = other.neighbourTerms;
+		squareBalance = other.squareBalance;
+		weights = other.weights;
+		plyCounter = other.plyCounter;
+	}//end copy constructor().
 
 	
 	public int getBoardSize() {
 		return boardSize;
 	}//end getSize().
+	
+	/**
+	 * Seeds the evaluation noise, making evaluate() and evaluateFast() reproducible.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+		copies = 0;
+		random.setSeed(seed);
+	}//end setSeed().
 
 
 	public boolean isGameOver(){
-		if(whitePieces.size() < 2 || blackPieces.size() < 2)
-			return true;
-		return false;
+		return hasWinner() || isDraw();
 	}//end makeMove().
+	
+	/**
+	 * True when the position has occurred getRepetitionLimit() times.
+	 */
+	public boolean isDraw(){
+		return repetitionLimit > 0 && repetitions() + 1 >= repetitionLimit;
+	}
+	
+	/**
+	 * True when the position occurred before with no capture since, as
+	 * the search scores a draw.
+	 */
+	public boolean isRepetition(){
+		if(seenHashes[(int) hash & (SEEN_SLOTS-1)] == 0)
+			return false;
+		for(int i=plyCounter-2; i >= plyCounter-reversible; i-=2){
+			if(hashHistory[i] == hash)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Number of earlier occurrences of the position.
+	 */
+	public int repetitions(){
+		if(seenHashes[(int) hash & (SEEN_SLOTS-1)] == 0)
+			return 0;
+		int count = 0;
+		for(int i=plyCounter-2; i >= plyCounter-reversible; i-=2){
+			if(hashHistory[i] == hash)
+				count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Plies played since the last capture.
+	 */
+	public int getReversiblePlies(){
+		return reversible;
+	}
+	
+	public int getRepetitionLimit(){
+		return repetitionLimit;
+	}
+	
+	/**
+	 * Sets how many occurrences of a position draw the game, at least 2; 0
+	 * disables the rule.
+	 */
+	public void setRepetitionLimit(int limit){
+		if(limit < 0 || limit == 1)
+			throw new IllegalArgumentException("Repetition limit must be 0 or at least 2: "+limit);
+		repetitionLimit = limit;
+	}
 
+	/**
+	 * Replaces the position with the given pieces, squares numbered
+	 * lin*getBoardSize()+col, and toMove to play. The undo history is cleared.
+	 * Each side may have at most getBoardSize() pieces, the number it starts
+	 * with; an invalid position throws IllegalArgumentException and leaves
+	 * the board as it was.
+	 */
+	public void setPosition(int[] white, int[] black, Color toMove){
+		long[] used = new long[WORDS];
+		checkSquares(white, used);
+		checkSquares(black, used);
+		for(Color color : Color.values()){
+			long[] bb = pieces[color.ordinal()];
+			for(int w=0; w < WORDS; w++){
+				for(long bits=bb[w]; bits != 0; bits &= bits-1){
+					removePiece(color, (w<<6) + Long.numberOfTrailingZeros(bits));
+				}
+			}
+		}
+		placePieces(Color.WHITE, white);
+		placePieces(Color.BLACK, black);
+		if(currentPlayer != toMove)
+			turnPlayer();
+		for(int i=0; i < plyCounter; i++){
+			seenHashes[(int) hashHistory[i] & (SEEN_SLOTS-1)]--;
+		}
+		plyCounter = 0;
+		reversible = 0;
+		nullMoves = 0;
+	}//end setPosition().
+	
+	private void checkSquares(int[] squares, long[] used) {
+		//Move buffers hold getMaxMoves(), which counts boardSize pieces.
+		if(squares.length > boardSize)
+			throw new IllegalArgumentException("Too many pieces: "+squares.length+" on a board of size "+boardSize);
+		for(int sq : squares){
+			if(sq < 0 || sq >= boardSize*boardSize || isSet(used, sq))
+				throw new IllegalArgumentException("Invalid or occupied square: "+sq);
+			set(used, sq);
+		}
+	}//end checkSquares().
+	
+	private void placePieces(Color color, int[] squares) {
+		for(int sq : squares){
+			placePiece(color, sq);
+		}
+	}//end placePieces().
+	
 	public Color get(int lin, int col){
-		return board[lin][col];
+		int sq = lin*boardSize + col;
+		if(isSet(pieces[Color.WHITE.ordinal()], sq))
+			return Color.WHITE;
+		if(isSet(pieces[Color.BLACK.ordinal()], sq))
+			return Color.BLACK;
+		return null;
 	}//end makeMove().
 	
+	/**
+	 * Zobrist key of the position, including the side to move.
+	 */
+	public long getHash(){
+		return hash;
+	}//end getHash().
+	
+	/**
+	 * The pieces of color as a two-word mask; callers must not modify it.
+	 */
+	long[] bitboard(Color color){
+		return pieces[color.ordinal()];
+	}//end bitboard().
+	
+	public int pieceCount(Color color){
+		long[] bb = pieces[color.ordinal()];
+		return Long.bitCount(bb[0]) + Long.bitCount(bb[1]);
+	}//end pieceCount().
+	
+	/**
+	 * Upper bound of the number of moves generateMoves() can write: each of
+	 * at most getBoardSize() pieces moves along two lines.
+	 */
+	public int getMaxMoves(){
+		return boardSize * 2*(boardSize-1);
+	}//end getMaxMoves().
+	
 	public List<HasamiMove> getMoves(){
-		List<HasamiMove> response = new ArrayList<HasamiMove>();
-		Set<Position> piecesPos = mapPieces.get(this.currentPlayer());
-		
-		for(Position pos : piecesPos){
-			Collections.addAll(response, getMoves(pos));
+		int count = generateMoves(moveBuffer);
+		List<HasamiMove> response = new ArrayList<HasamiMove>(count);
+		for(int i=0; i < count; i++){
+			response.add(toHasamiMove(moveBuffer[i]));
 		}
-		
 		return response;
 	}//end makeMove().
 	
+	/**
+	 * Writes the packed moves of the current player into buffer, which must
+	 * hold at least getMaxMoves() entries, and returns how many were written.
+	 */
+	public int generateMoves(int[] buffer){
+		return generateMoves(buffer, false);
+	}//end generateMoves().
+	
+	/**
+	 * Like generateMoves(), writing only the moves that capture something.
+	 */
+	public int generateCaptures(int[] buffer){
+		return generateMoves(buffer, true);
+	}//end generateCaptures().
+	
+	private int generateMoves(int[] buffer, boolean capturesOnly){
+		int c = currentPlayer.ordinal();
+		long[] own = pieces[c];
+		long[] opp = pieces[1-c];
+		long occ0 = own[0] | opp[0];
+		long occ1 = own[1] | opp[1];
+		int count = 0;
+		
+		for(int w=0; w < WORDS; w++){
+			for(long bits=own[w]; bits != 0; bits &= bits-1){
+				int sq = (w<<6) + Long.numberOfTrailingZeros(bits);
+				//The moving piece leaves its square before captures are tested.
+				toggleLines(c, sq);
+				count = getMoves(c, sq, occ0, occ1, buffer, count, capturesOnly);
+				toggleLines(c, sq);
+			}
+		}
+		
+		return count;
+	}//end generateMoves().
 	
 	public void makeMove(HasamiMove move){
-		board[move.endLine][move.endCol] = board[move.startLine][move.startCol];
-		board[move.startLine][move.startCol] = null;
+		makeMove(encodeMove(move));
+	}//end makeMove().
+	
+	public void undoMove(HasamiMove move){
+		int from = move.startLine*boardSize + move.startCol;
+		int to = move.endLine*boardSize + move.endCol;
+		undoMove(packMove(from, to, 0));
+	}//end undoMove
+	
+	/**
+	 * Plays a packed move. Its capture count must come from generateMoves()
+	 * or encodeMove(): moves flagged as quiet skip the capture scan.
+	 */
+	public void makeMove(int move){
+		int to = moveTo(move);
+		if(plyCounter == hashHistory.length){
+			hashHistory = Arrays.copyOf(hashHistory, 2*plyCounter);
+			reversibleHistory = Arrays.copyOf(reversibleHistory, 2*plyCounter);
+		}
+		hashHistory[plyCounter] = hash;
+		reversibleHistory[plyCounter] = reversible;
+		seenHashes[(int) hash & (SEEN_SLOTS-1)]++;
+		removePiece(currentPlayer, moveFrom(move));
+		placePiece(currentPlayer, to);
+		if(WORDS*(plyCounter+1) > undoCaptures.length)
+			undoCaptures = Arrays.copyOf(undoCaptures, 2*undoCaptures.length);
 		//Testa e executa captura.
-		verifyAndExecuteCapture(move.endLine, move.endCol);
-		//Before turn player, update picesPos.
-		Set<Position> piecesPos = mapPieces.get(this.currentPlayer());
-		piecesPos.remove(new Position(move.startLine, move.startCol));
-		piecesPos.add(new Position(move.endLine, move.endCol));
+		if(moveCaptures(move) > 0){
+			verifyAndExecuteCapture(to/boardSize, to%boardSize);
+		}else{
+			undoCaptures[WORDS*plyCounter] = 0;
+			undoCaptures[WORDS*plyCounter+1] = 0;
+		}
+		reversible = (undoCaptures[WORDS*plyCounter] | undoCaptures[WORDS*plyCounter+1]) != 0 ? 0 : reversible+1;
 		turnPlayer();
 		plyCounter++;
 	}//end makeMove().
 	
-	public void undoMove(HasamiMove move){
+	public void undoMove(int move){
 		plyCounter--;
+		reversible = reversibleHistory[plyCounter];
+		seenHashes[(int) hashHistory[plyCounter] & (SEEN_SLOTS-1)]--;
 		
 		turnPlayer();
-		//Update picesPos.
-		Set<Position> piecesPos = mapPieces.get(this.currentPlayer());
-		piecesPos.remove(new Position(move.endLine, move.endCol));
-		piecesPos.add(new Position(move.startLine, move.startCol));
-		
 		verifyAndUndoCapture();
 		
-		board[move.startLine][move.startCol] = board[move.endLine][move.endCol];
-		board[move.endLine][move.endCol] = null;
-		
-		
-		
+		removePiece(currentPlayer, moveTo(move));
+		placePiece(currentPlayer, moveFrom(move));
 	}//end undoMove
 	
+	/**
+	 * Passes the turn without moving, for null-move pruning.
+	 */
+	public void makeNullMove(){
+		//Positions before a pass do not repeat after it.
+		if(nullMoves == nullMoveReversible.length)
+			nullMoveReversible = Arrays.copyOf(nullMoveReversible, 2*nullMoves);
+		nullMoveReversible[nullMoves++] = reversible;
+		reversible = 0;
+		turnPlayer();
+	}//end makeNullMove().
+	
+	public void undoNullMove(){
+		reversible = nullMoveReversible[--nullMoves];
+		turnPlayer();
+	}//end undoNullMove().
+	
+	public HasamiMove toHasamiMove(int move){
+		int from = moveFrom(move);
+		int to = moveTo(move);
+		return new HasamiMove(from/boardSize, from%boardSize, to/boardSize, to%boardSize);
+	}//end toHasamiMove().
+	
+	/**
+	 * Packs a move of the current player, counting the pieces it captures.
+	 */
+	public int encodeMove(HasamiMove move){
+		return encodeMove(move.startLine*boardSize + move.startCol, move.endLine*boardSize + move.endCol);
+	}//end encodeMove().
+	
+	/**
+	 * Packs the move from square to square, numbered lin*getBoardSize()+col.
+	 */
+	public int encodeMove(int from, int to){
+		int c = currentPlayer.ordinal();
+		boolean own = isSet(pieces[c], from);
+		if(own)
+			toggleLines(c, from);
+		int captures = countCaptures(c, to);
+		if(own)
+			toggleLines(c, from);
+		return packMove(from, to, captures);
+	}//end encodeMove().
+	
+	public static int packMove(int from, int to, int captures){
+		return from | (to << SQUARE_BITS) | (captures << CAPTURE_SHIFT);
+	}
+	
+	public static int moveFrom(int move){
+		return move & SQUARE_MASK;
+	}
+	
+	public static int moveTo(int move){
+		return (move >>> SQUARE_BITS) & SQUARE_MASK;
+	}
+	
+	public static int moveCaptures(int move){
+		return move >>> CAPTURE_SHIFT;
+	}
+	
 
 	private void verifyAndUndoCapture() {
-		List<Position> captureList = mapCaptures.get(plyCounter);
-		if(captureList==null)
+		int index = WORDS*plyCounter;
+		if((undoCaptures[index] | undoCaptures[index+1]) == 0)
 			return;
-		for(Position pos : captureList){
-			board[pos.lin][pos.col]=getOpponentColor();
-			mapPieces.get(getOpponentColor()).add(pos);
+		Color opponent = getOpponentColor();
+		for(int w=0; w < WORDS; w++){
+			for(long bits=undoCaptures[index+w]; bits != 0; bits &= bits-1){
+				placePiece(opponent, (w<<6) + Long.numberOfTrailingZeros(bits));
+			}
 		}
 	}
 
@@ -137,60 +597,24 @@ public class Board {
 				return -100+depth;
 		}
 		
-		for(Position p : mapPieces.get(Color.WHITE)){
-			double plus = evaluationBonus(Color.WHITE, p);
-			eval++;
-			eval += plus;
-		}
-	
-		for(Position p : mapPieces.get(Color.BLACK)){
-			double plus = -evaluationBonus(Color.BLACK, p);  //positional bonus.
-			eval--;
-			eval += plus;
-		}
-	
-		return fator*eval + (Math.random()*0.1);
-	}//end evaluate().
-
-	
-	private double evaluationBonus(Color posColor, Position p) {
-		double eval=0;
-		Position[] crux = new Position[]{new Position(p.lin+1, p.col),
-										 new Position(p.lin-1, p.col),
-										 new Position(p.lin, p.col+1),
-										 new Position(p.lin, p.col-1)};
-		
-		Position[] x = new Position[]{new Position(p.lin+1, p.col+1),
-				 					  new Position(p.lin-1, p.col-1),
-				 					  new Position(p.lin-1, p.col+1),
-				 					  new Position(p.lin+1, p.col-1)};
-		
+		double[] w = weights.values;
+		eval += (pieceCount(Color.WHITE) - pieceCount(Color.BLACK)) * w[EvalWeights.PIECES];
 		//Try to capture more.
-		for(Position pos : crux){
-			if(mapPieces.get(opponentColor(posColor)).contains(pos))
-				eval+=0.15;
-		}
+		eval += field(patternBalance, ATTACK_FIELD) * w[EvalWeights.ATTACKS];
 		//Try to defend more.
-		for(Position pos : x){
-			if(mapPieces.get(posColor).contains(pos))
-				eval+=0.05;
-		}
+		eval += field(patternBalance, DEFENCE_FIELD) * w[EvalWeights.DEFENCES];
 		// Corner squares are good!
-		if((p.lin==0 && p.col==0) || 
-		   (p.lin==0 && p.col==boardSize-1) ||
-		   (p.lin==boardSize-1 && p.col==0) ||
-		   (p.lin==boardSize-1 && p.col==boardSize-1)){
-			eval += 0.09;
-		}
+		eval += field(squareBalance, CORNER_FIELD) * w[EvalWeights.CORNERS];
 		//Try to advance more.
-		if(posColor==Color.WHITE){
-			eval += p.lin/2d * 0.05;
-		}else{
-			eval += (boardSize-1-p.lin)/2d * 0.05;
-		}
-		
-		return eval;
-	}
+		eval += field(squareBalance, ADVANCE_FIELD)/2d * w[EvalWeights.ADVANCE];
+		//Avoid sandwiches and the edges.
+		eval += field(patternBalance, THREAT_FIELD) * w[EvalWeights.THREATS];
+		eval += field(patternBalance, EDGE_FIELD) * w[EvalWeights.EDGES];
+	
+		return fator*eval + (random.nextDouble()*0.1);
+	}//end evaluate().
+
+	
 
 
 	public double evaluateFast(Color player, int depth){
@@ -203,27 +627,74 @@ public class Board {
 		if(hasWinner()){
 				return -100+depth;
 		}
-		for(Position p : mapPieces.get(Color.WHITE)){
-			double plus = p.lin/2d * 0.1; //positional bonus.
-			eval++;
-			eval += plus;
-		}
-		for(Position p : mapPieces.get(Color.BLACK)){
-			double plus = -(boardSize-1-p.lin)/2d * 0.1;  //positional bonus.
-			eval--;
-			eval += plus;
-		}
+		double[] w = weights.values;
+		eval += (pieceCount(Color.WHITE) - pieceCount(Color.BLACK)) * w[EvalWeights.PIECES];
+		eval += field(squareBalance, ADVANCE_FIELD)/2d * w[EvalWeights.FAST_ADVANCE]; //positional bonus.
 		
-		return fator*eval + (Math.random()*0.1);
+		return fator*eval + (random.nextDouble()*0.1);
 	}//end evaluate().
 	
+	/**
+	 * Stores the terms of evaluate() in terms, indexed as in EvalWeights and
+	 * from white's point of view, without the noise.
+	 */
+	void evaluationTerms(double[] terms){
+		terms[EvalWeights.PIECES] = pieceCount(Color.WHITE) - pieceCount(Color.BLACK);
+		terms[EvalWeights.ATTACKS] = field(patternBalance, ATTACK_FIELD);
+		terms[EvalWeights.DEFENCES] = field(patternBalance, DEFENCE_FIELD);
+		terms[EvalWeights.CORNERS] = field(squareBalance, CORNER_FIELD);
+		terms[EvalWeights.ADVANCE] = field(squareBalance, ADVANCE_FIELD)/2d;
+		long patterns = neighbourTerms ? patternBalance : patternSum();
+		terms[EvalWeights.THREATS] = field(patterns, THREAT_FIELD);
+		terms[EvalWeights.EDGES] = field(patterns, EDGE_FIELD);
+		terms[EvalWeights.FAST_ADVANCE] = 0;
+	}
+	
+	/**
+	 * The pattern terms of all the pieces, counted from scratch.
+	 */
+	private long patternSum(){
+		long balance = FIELD_BIAS;
+		for(Color color : Color.values()){
+			long[] bb = pieces[color.ordinal()];
+			for(int w=0; w < WORDS; w++){
+				for(long bits=bb[w]; bits != 0; bits &= bits-1){
+					int sq = (w<<6) + Long.numberOfTrailingZeros(bits);
+					int lin = sq/boardSize;
+					balance += PATTERN_TERMS[color.ordinal()+1][pattern(lin+1, sq-lin*boardSize+1)];
+				}
+			}
+		}
+		return balance;
+	}
+	
+	/**
+	 * A copy of the evaluation weights: changing it changes nothing until it
+	 * is given back with setWeights().
+	 */
+	public EvalWeights getWeights(){
+		return weights.copy();
+	}
+	
+	/**
+	 * Sets the evaluation weights, kept by copies of this board; null
+	 * restores the hand-picked ones.
+	 */
+	public void setWeights(EvalWeights weights){
+		this.weights = weights == null ? EvalWeights.DEFAULT : weights;
+		boolean needed = this.weights.values[EvalWeights.THREATS] != 0 || this.weights.values[EvalWeights.EDGES] != 0;
+		if(needed && !neighbourTerms)
+			patternBalance = patternSum();
+		neighbourTerms = needed;
+	}
+	
 	public Color currentPlayer(){
 		return currentPlayer;
 	}//end currentPlayer().
 	
 
 	public boolean hasWinner() {
-		if(whitePieces.size() < 2 || blackPieces.size() < 2)
+		if(pieceCount(Color.WHITE) < 2 || pieceCount(Color.BLACK) < 2)
 			return true;
 		
 		return false;
@@ -233,128 +704,221 @@ public class Board {
 	
 	private void setupBoard() {
 		for(int col=0; col < boardSize; col++){
-			board[0][col]=Color.WHITE;
-			board[boardSize-1][col]=Color.BLACK;
-			whitePieces.add(new Position(0, col));
-			blackPieces.add(new Position(boardSize-1, col));
+			placePiece(Color.WHITE, col);
+			placePiece(Color.BLACK, (boardSize-1)*boardSize + col);
+		}
+	}//end of setupBoard().
+	
+	/**
+	 * Fills the square tables and the border of the empty board.
+	 */
+	private void setupNeighbours() {
+		int border = OFF_BOARD | OFF_BOARD << 2*(boardSize+1);
+		for(int row=0; row < cellRows.length; row++){
+			cellRows[row] = row == 0 || row == boardSize+1 ? (1 << 2*(boardSize+2)) - 1 : border;
 		}
-		for(int line=1; line < boardSize-1; line++){
+		for(int lin=0; lin < boardSize; lin++){
 			for(int col=0; col < boardSize; col++){
-				board[line][col]=null;
+				int sq = lin*boardSize + col;
+				long corner = (lin==0 || lin==boardSize-1) && (col==0 || col==boardSize-1) ? 1 : 0;
+				squareTerms[Color.WHITE.ordinal()][sq] = corner << CORNER_FIELD | (long) lin << ADVANCE_FIELD;
+				squareTerms[Color.BLACK.ordinal()][sq] = -(corner << CORNER_FIELD | (long) (boardSize-1-lin) << ADVANCE_FIELD);
 			}
 		}
-	}//end of setupBoard().
-
-	private void verifyAndExecuteCapture(int pieceLine, int pieceCol) {
-		List<Position> captures = new ArrayList<Position>();
-		List<Position> buffer = new ArrayList<Position>();
-		Color currentPlayerColor = board[pieceLine][pieceCol];
-		Color opponentColor = getOpponentColor();
-		
-		//Inclui casas vazias na mesma coluna, linhas decrescentes.
-		int newLin = pieceLine - 1;
-		while(newLin >= 0 && board[newLin][pieceCol]!=null){
-			if(board[newLin][pieceCol] == opponentColor){
-				buffer.add(new Position(newLin, pieceCol));
-			}else if(buffer.size()>0 && board[newLin][pieceCol]==currentPlayerColor){
-				collectionsCopy(captures, buffer);
-				buffer.clear();
-				break; //captures from this side are finished!
-			}
-			newLin--;
+	}//end of setupNeighbours().
+	
+	/**
+	 * Puts a piece on sq, updating the hash and the evaluation terms.
+	 */
+	private void placePiece(Color color, int sq) {
+		updateTerms(color, sq, 1);
+		set(pieces[color.ordinal()], sq);
+		toggleLines(color.ordinal(), sq);
+		hash ^= ZOBRIST[color.ordinal()][sq];
+	}//end of placePiece.
+	
+	private void removePiece(Color color, int sq) {
+		clear(pieces[color.ordinal()], sq);
+		toggleLines(color.ordinal(), sq);
+		hash ^= ZOBRIST[color.ordinal()][sq];
+		updateTerms(color, sq, -1);
+	}//end of removePiece.
+	
+	/**
+	 * Adds (sign 1) or subtracts (sign -1) the terms of a piece on sq, which
+	 * must not be in the bitboards at the time of the call, and the change it
+	 * makes to the patterns of the pieces around it. Unless neighbourTerms,
+	 * only the terms counted by pairs are kept, from the piece's own pattern.
+	 */
+	private void updateTerms(Color color, int sq, int sign) {
+		int state = color.ordinal()+1;
+		int lin = sq/boardSize;
+		int col = sq - lin*boardSize + 1;
+		lin++;
+		squareBalance += sign*squareTerms[color.ordinal()][sq];
+		int pattern = pattern(lin, col);
+		if(!neighbourTerms){
+			patternBalance += sign*PAIR_TERMS[state][pattern];
+			cellRows[lin] ^= state << 2*col;
+			return;
 		}
-
-		//Inclui casas vazias na mesma coluna, linhas crescentes.
-		buffer.clear();
-		newLin = pieceLine+1;
-		while(newLin < board.length && board[newLin][pieceCol]!=null){
-			if(board[newLin][pieceCol] == opponentColor){
-				buffer.add(new Position(newLin, pieceCol));
-			}else if(buffer.size()>0 && board[newLin][pieceCol]==currentPlayerColor){
-				collectionsCopy(captures, buffer);
-				buffer.clear();
-				break; //captures from this side are finished!
-			}	
-			newLin++;
+		long balance = patternBalance + sign*PATTERN_TERMS[state][pattern];
+		//Neighbours holding a piece have exactly one of their two bits set.
+		for(int around=(pattern ^ pattern >>> 1) & 0x5555; around != 0; around &= around-1){
+			int k = Integer.numberOfTrailingZeros(around) >>> 1;
+			int before = pattern(lin + NEIGHBOUR_LIN[k], col + NEIGHBOUR_COL[k]);
+			//sq is neighbour 7-k of it.
+			int after = before ^ (state << 2*(7-k));
+			int cell = (pattern >>> 2*k) & 3;
+			balance += PATTERN_TERMS[cell][after] - PATTERN_TERMS[cell][before];
 		}
-		//Inclui casas vazias na mesma linha, colunas decrescentes.
-		buffer.clear();
-		int newCol = pieceCol-1;
-		while(newCol >= 0 && board[pieceLine][newCol]!=null){
-			if(board[pieceLine][newCol] == opponentColor){
-				buffer.add(new Position(pieceLine, newCol));
-			}else if(buffer.size()>0 && board[pieceLine][newCol]==currentPlayerColor){
-				collectionsCopy(captures, buffer);
-				buffer.clear();
-				break; //captures from this side are finished!
-			}	
-			newCol--;
+		patternBalance = balance;
+		cellRows[lin] ^= state << 2*col;
+	}//end of updateTerms.
+	
+	/**
+	 * The neighbourhood pattern of the square at (lin, col) of the bordered rows.
+	 */
+	private int pattern(int lin, int col){
+		int shift = 2*(col-1);
+		int top = (cellRows[lin-1] >>> shift) & 0x3F;
+		int middle = (cellRows[lin] >>> shift) & 0x3F;
+		int bottom = (cellRows[lin+1] >>> shift) & 0x3F;
+		return top | (middle & 3) << 6 | (middle >>> 4) << 8 | bottom << 10;
+	}
+
+	private void toggleLines(int c, int sq) {
+		int lin = sq/boardSize;
+		int col = sq - lin*boardSize;
+		rows[c][lin] ^= 1 << col;
+		cols[c][col] ^= 1 << lin;
+	}//end of toggleLines.
+
+	private void verifyAndExecuteCapture(int pieceLine, int pieceCol) {
+		int c = currentPlayer.ordinal();
+		int rowCaptures = lineCaptures(rows[c][pieceLine], rows[1-c][pieceLine], pieceCol);
+		int colCaptures = lineCaptures(cols[c][pieceCol], cols[1-c][pieceCol], pieceLine);
+		captured[0] = 0;
+		captured[1] = 0;
+		for(int bits=rowCaptures; bits != 0; bits &= bits-1){
+			set(captured, pieceLine*boardSize + Integer.numberOfTrailingZeros(bits));
 		}
-		//Inclui casas vazias na mesma linha, colunas crescentes.
-		buffer.clear();
-		newCol = pieceCol+1;
-		while(newCol < board.length && board[pieceLine][newCol]!=null){
-			if(board[pieceLine][newCol] == opponentColor){
-				buffer.add(new Position(pieceLine, newCol));
-			}else if(buffer.size()>0 && board[pieceLine][newCol] == currentPlayerColor){
-				collectionsCopy(captures, buffer);
-				buffer.clear();
-				break; //captures from this side are finished!
-			}	
-			newCol++;
+		for(int bits=colCaptures; bits != 0; bits &= bits-1){
+			set(captured, Integer.numberOfTrailingZeros(bits)*boardSize + pieceCol);
 		}
-		
-		executeCaptures(captures);
+		executeCaptures(captured);
 
 	}//and of verifyAndGetCaptures.
+	
+	/**
+	 * Captures of a piece of color landing on sq, as if it came from an empty square.
+	 */
+	int countCaptures(Color color, int sq) {
+		return countCaptures(color.ordinal(), sq);
+	}//end of countCaptures.
+	
+	/**
+	 * Number of opponent pieces sandwiched by a piece of colour c landing on sq.
+	 */
+	private int countCaptures(int c, int sq) {
+		int lin = sq/boardSize;
+		int col = sq - lin*boardSize;
+		return Integer.bitCount(lineCaptures(rows[c][lin], rows[1-c][lin], col))
+			 + Integer.bitCount(lineCaptures(cols[c][col], cols[1-c][col], lin));
+	}//end of countCaptures.
+	
+	/**
+	 * Mask of the opponent pieces captured along one line by an own piece landing on pos.
+	 */
+	private int lineCaptures(int own, int opp, int pos) {
+		return captureTable[(TERNARY[own & ~(1 << pos)] + 2*TERNARY[opp])*boardSize + pos];
+	}//end of lineCaptures.
+	
+	/**
+	 * Capture masks of every line pattern of a board size, indexed by
+	 * (own + 2*opp pattern in base 3)*size + landing position.
+	 */
+	private static synchronized short[] captureTable(int size) {
+		if(CAPTURE_TABLES[size] == null){
+			short[] table = new short[POW3[size]*size];
+			for(int pattern=0; pattern < POW3[size]; pattern++){
+				int own = 0;
+				int opp = 0;
+				for(int i=0, digits=pattern; i < size; i++, digits/=3){
+					if(digits%3 == 1)
+						own |= 1 << i;
+					else if(digits%3 == 2)
+						opp |= 1 << i;
+				}
+				for(int pos=0; pos < size; pos++){
+					if(((own|opp) & (1 << pos)) == 0)
+						table[pattern*size + pos] = (short) (scanLine(own, opp, pos, -1, size) | scanLine(own, opp, pos, 1, size));
+				}
+			}
+			CAPTURE_TABLES[size] = table;
+		}
+		return CAPTURE_TABLES[size];
+	}//end of captureTable.
 
-	private <T> void collectionsCopy(List<T> dst, List<T> src) {
-		for(T elem : src){
-			dst.add(elem);
+	private static int scanLine(int own, int opp, int pos, int step, int size) {
+		int buffer = 0;
+		for(int i=pos+step; i >= 0 && i < size; i+=step){
+			if((opp & (1 << i)) != 0){
+				buffer |= 1 << i;
+			}else if((own & (1 << i)) != 0){
+				if(buffer != 0)
+					return buffer; //captures from this side are finished!
+			}else{
+				return 0;
+			}
 		}
-		
-	}
+		return 0;
+	}//end of scanLine.
 
 
-	private void executeCaptures(List<Position> captureList) {
+	private void executeCaptures(long[] captureMask) {
 		//Save it in case of latter undo.
-		mapCaptures.put(plyCounter, captureList);
+		undoCaptures[WORDS*plyCounter] = captureMask[0];
+		undoCaptures[WORDS*plyCounter+1] = captureMask[1];
 		
-		for(Position pos : captureList){
-			board[pos.lin][pos.col]=null;
-			mapPieces.get(getOpponentColor()).remove(pos);
+		Color opponent = getOpponentColor();
+		for(int w=0; w < WORDS; w++){
+			for(long bits=captureMask[w]; bits != 0; bits &= bits-1){
+				removePiece(opponent, (w<<6) + Long.numberOfTrailingZeros(bits));
+			}
 		}
 		
 	}//end of executeCaptures.
 
-	private HasamiMove[] getMoves(Position pos) {
-		List<HasamiMove> moves = new ArrayList<HasamiMove>();
+	private int getMoves(int c, int sq, long occ0, long occ1, int[] moves, int count, boolean capturesOnly) {
+		int lin = sq/boardSize;
+		int col = sq - lin*boardSize;
 		//Inclui casas vazias na mesma coluna, linhas decrescentes.
-		int newLin = pos.lin-1;
-		while(newLin >= 0 && board[newLin][pos.col]==null){
-			moves.add(new HasamiMove(pos.lin, pos.col, newLin, pos.col));
-			newLin--;
+		for(int newLin=lin-1, to=sq-boardSize; newLin >= 0 && !isSet(occ0, occ1, to); newLin--, to-=boardSize){
+			count = addMove(c, sq, to, moves, count, capturesOnly);
 		}
 		//Inclui casas vazias na mesma coluna, linhas crescentes.
-		newLin = pos.lin+1;
-		while(newLin < board.length && board[newLin][pos.col]==null){
-			moves.add(new HasamiMove(pos.lin, pos.col, newLin, pos.col));
-			newLin++;
+		for(int newLin=lin+1, to=sq+boardSize; newLin < boardSize && !isSet(occ0, occ1, to); newLin++, to+=boardSize){
+			count = addMove(c, sq, to, moves, count, capturesOnly);
 		}
 		//Inclui casas vazias na mesma linha, colunas decrescentes.
-		int newCol = pos.col-1;
-		while(newCol >= 0 && board[pos.lin][newCol]==null){
-			moves.add(new HasamiMove(pos.lin, pos.col, pos.lin, newCol));
-			newCol--;
+		for(int newCol=col-1, to=sq-1; newCol >= 0 && !isSet(occ0, occ1, to); newCol--, to--){
+			count = addMove(c, sq, to, moves, count, capturesOnly);
 		}
 		//Inclui casas vazias na mesma linha, colunas crescentes.
-		newCol = pos.col+1;
-		while(newCol < board.length && board[pos.lin][newCol]==null){
-			moves.add(new HasamiMove(pos.lin, pos.col, pos.lin, newCol));
-			newCol++;
+		for(int newCol=col+1, to=sq+1; newCol < boardSize && !isSet(occ0, occ1, to); newCol++, to++){
+			count = addMove(c, sq, to, moves, count, capturesOnly);
 		}
-		return moves.toArray(new HasamiMove[]{});
+		return count;
 	}// end of getMoves.
+	
+	private int addMove(int c, int from, int to, int[] moves, int count, boolean capturesOnly) {
+		int captures = countCaptures(c, to);
+		if(capturesOnly && captures == 0)
+			return count;
+		moves[count] = packMove(from, to, captures);
+		return count+1;
+	}// end of addMove.
 
 	private void turnPlayer(){
 		//turn player.
@@ -362,6 +926,7 @@ public class Board {
 			currentPlayer=Color.WHITE;
 		else
 			currentPlayer=Color.BLACK;
+		hash ^= ZOBRIST_SIDE;
 	}
 	
 	public Color getOpponentColor(){
@@ -378,28 +943,21 @@ public class Board {
 			return Color.BLACK;
 	}
 	
-	//------ Inner class Position -----------
-	private static class Position{
-		public final int lin;
-		public final int col;
-		public Position(int lin, int col){
-			this.lin=lin;
-			this.col=col;
-		}
-		
-		@Override
-		public boolean equals(Object obj) {
-			if (! (obj instanceof Position)) {
-				return false;
-			}
-			Position pos = (Position) obj;
-			return pos.hashCode()==this.hashCode();
-		}
-		
-		@Override
-		public int hashCode() {
-			return 1000*lin+col;
-		}	
-	}//end of class Position.
+	//------ Bitboard helpers -----------
+	private static boolean isSet(long[] bb, int sq){
+		return (bb[sq >>> 6] & (1L << sq)) != 0;
+	}
+	
+	private static boolean isSet(long bb0, long bb1, int sq){
+		return ((sq < 64 ? bb0 : bb1) & (1L << sq)) != 0;
+	}
+	
+	private static void set(long[] bb, int sq){
+		bb[sq >>> 6] |= 1L << sq;
+	}
+	
+	private static void clear(long[] bb, int sq){
+		bb[sq >>> 6] &= ~(1L << sq);
+	}
 	
 }//end of class Board.
\ No newline at end of file
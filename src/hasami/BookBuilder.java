@@ -0,0 +1,172 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds an OpeningBook from self-play: every game searches each of its
+ * first plies to a fixed depth, and each move played adds one to its weight.
+ * The games differ through the seeds of the evaluation noise.
+ */
+public class BookBuilder {
+
+	private final int boardSize;
+	private final int depth;
+	private final int plies;
+	private final SearchOptions options;
+	//-- Position hash -> packed from/to move -> times played. --//
+	private final Map<Long, Map<Integer, Integer>> weights = new HashMap<Long, Map<Integer, Integer>>();
+	
+	public BookBuilder(int boardSize, int depth, int plies, SearchOptions options){
+		this.boardSize = boardSize;
+		this.depth = depth;
+		this.plies = plies;
+		this.options = options;
+	}
+	
+	/**
+	 * Plays games with seeds firstSeed, firstSeed+1, ... over threads workers,
+	 * each with its own Engine.
+	 */
+	public void play(final int games, final long firstSeed, int threads) throws InterruptedException {
+		final AtomicInteger next = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		for(int t=0; t < threads; t++){
+			pool.execute(new Runnable() {
+				public void run() {
+					Engine engine = new Engine(depth, options);
+					for(int game=next.getAndIncrement(); game < games; game=next.getAndIncrement()){
+						playGame(engine, firstSeed + game);
+					}
+					engine.shutdown();
+				}
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+	}
+	
+	private void playGame(Engine engine, long seed){
+		Board board = new Board(boardSize);
+		board.setSeed(seed);
+		engine.newGame();
+		for(int ply=0; ply < plies && !board.isGameOver(); ply++){
+			HasamiMove move = engine.machineMove(board, board.currentPlayer());
+			int packed = board.encodeMove(move);
+			add(board.getHash(), Board.packMove(Board.moveFrom(packed), Board.moveTo(packed), 0));
+			board.makeMove(packed);
+		}
+	}
+	
+	private synchronized void add(long key, int move){
+		Map<Integer, Integer> moves = weights.get(key);
+		if(moves == null){
+			moves = new HashMap<Integer, Integer>();
+			weights.put(key, moves);
+		}
+		Integer weight = moves.get(move);
+		moves.put(move, weight == null ? 1 : weight + 1);
+	}
+	
+	/**
+	 * Writes the moves played at least minWeight times.
+	 * @return the number of entries written.
+	 */
+	public synchronized int write(File file, int minWeight) throws IOException {
+		int count = 0;
+		for(Map<Integer, Integer> moves : weights.values()){
+			for(int weight : moves.values()){
+				if(weight >= minWeight)
+					count++;
+			}
+		}
+		long[] keys = new long[count];
+		int[] moves = new int[count];
+		int[] entryWeights = new int[count];
+		int i = 0;
+		for(Map.Entry<Long, Map<Integer, Integer>> position : weights.entrySet()){
+			for(Map.Entry<Integer, Integer> move : position.getValue().entrySet()){
+				if(move.getValue() < minWeight)
+					continue;
+				keys[i] = position.getKey();
+				moves[i] = move.getKey();
+				entryWeights[i] = move.getValue();
+				i++;
+			}
+		}
+		OpeningBook.write(file, boardSize, keys, moves, entryWeights);
+		return count;
+	}
+	
+	/**
+	 * Usage: BookBuilder file [-games n] [-plies n] [-depth n] [-min n] [-threads n] [-size n] [-seed n] [name=value...]
+	 * The name=value settings are SearchOptions of the self-play engines.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length == 0){
+			System.out.println("Usage: BookBuilder file [-games n] [-plies n] [-depth n] [-min n] [-threads n] [-size n] [-seed n] [name=value...]");
+			return;
+		}
+		File file = new File(args[0]);
+		int games = 100;
+		int plies = 8;
+		int depth = 6;
+		int minWeight = 2;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int size = 9;
+		long seed = 1;
+		SearchOptions options = new SearchOptions();
+		for(int i=1; i < args.length; i++){
+			if(args[i].equals("-games"))
+				games = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-plies"))
+				plies = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-depth"))
+				depth = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-min"))
+				minWeight = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-threads"))
+				threads = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-size"))
+				size = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-seed"))
+				seed = Long.parseLong(args[++i]);
+			else if(args[i].indexOf('=') > 0)
+				options.setAll(args[i]);
+			else
+				throw new IllegalArgumentException("Unknown option: "+args[i]);
+		}
+		
+		long start = System.nanoTime();
+		BookBuilder builder = new BookBuilder(size, depth, plies, options);
+		builder.play(games, seed, threads);
+		int entries = builder.write(file, minWeight);
+		System.out.println(entries+" entries from "+games+" games in "+(System.nanoTime()-start)/1000000000+" s");
+	}
+	
+}//end class.
@@ -20,6 +20,9 @@
 package hasami;
 
 import hasami.Board.Color;
+
+import java.io.File;
+import java.io.IOException;
 import java.util.Scanner;
 public class CLI {
 	public enum MODE {
@@ -29,11 +32,31 @@ public class CLI {
 	final int MAX_DEPTH = 4;
 	int moveNumber = 2;
 	MODE mode;
+	long moveTime;
+	boolean ponder;
 	Board board = new Board(9);
 	Engine engine = new Engine(MAX_DEPTH);
+	Scanner scanner = new Scanner(System.in);
 
 	public CLI(MODE mode) {
+		this(mode, 0, false);
+	}
+
+	/**
+	 * @param moveTime milliseconds per computer move, or 0 to search to MAX_DEPTH.
+	 * @param ponder search the expected reply while the human thinks.
+	 */
+	public CLI(MODE mode, long moveTime, boolean ponder) {
 		this.mode = mode;
+		this.moveTime = moveTime;
+		this.ponder = ponder;
+		engine.setListener(new SearchListener() {
+			public void iterationCompleted(SearchResult result) {
+				System.out.println("  "+result);
+			}
+			public void rootMoveSearched(int depth, int moveNumber, HasamiMove move, double score) {
+			}
+		});
 	}
 
 	public void run() {
@@ -45,15 +68,11 @@ public class CLI {
 				if (mode == MODE.HxC || mode == MODE.HxH) {
 					move = getHumanMove(board);
 				} else {
-					System.out.println("Computer thinking...");
-					move = engine.machineMove(board, board.currentPlayer());
-					System.out.println("Computer move: "+move);
+					move = computerMove();
 				}
 			} else {
 				if (mode == MODE.HxC || mode == MODE.CxC) {
-					System.out.println("Computer thinking...");
-					move = engine.machineMove(board, board.currentPlayer());
-					System.out.println("Computer move: "+move);
+					move = computerMove();
 				} else {
 					move = getHumanMove(board);
 				}
@@ -63,6 +82,11 @@ public class CLI {
 				validateMove(move);
 				board.makeMove(move);
 				printBoard(board);
+				if(ponder && isHuman(board.currentPlayer()) && !isHuman(board.getOpponentColor()) && !board.isGameOver()){
+					HasamiMove expected = engine.ponder(board);
+					if(expected != null)
+						System.out.println("Pondering on "+expected);
+				}
 				System.out.println("Elapsed time: "+(etime-stime)/1000+" seconds");
 				moveNumber++;
 			}catch(Throwable t){
@@ -77,6 +101,7 @@ public class CLI {
 					}
 			}
 		}
+		engine.shutdown();
 		if(board.hasWinner())
 			if(board.currentPlayer()==Color.BLACK)
 				System.out.println("\\> WHITE WON!");
@@ -86,6 +111,28 @@ public class CLI {
 			System.out.println("\\> DRAW.");
 	}
 
+	private HasamiMove computerMove() {
+		System.out.println("Computer thinking...");
+		HasamiMove move;
+		if(moveTime > 0)
+			move = engine.machineMove(board, board.currentPlayer(), moveTime);
+		else
+			move = engine.machineMove(board, board.currentPlayer());
+		if(engine.getLastResult().fromBook)
+			System.out.println("Book move");
+		if(engine.getLastResult().ponderHit)
+			System.out.println("Ponder hit");
+		System.out.println("Computer eval: "+move.val);
+		System.out.println("Computer move: "+move);
+		return move;
+	}
+
+	private boolean isHuman(Color player) {
+		if(player == Color.WHITE)
+			return mode == MODE.HxC || mode == MODE.HxH;
+		return mode == MODE.CxH || mode == MODE.HxH;
+	}
+
 	private void validateMove(HasamiMove move) {
 		if(!board.getMoves().contains(move)){
 			throw new RuntimeException("Invalid move: "+move);
@@ -98,30 +145,15 @@ public class CLI {
 			System.out.print((moveNumber/2)+". ");
 		else
 			System.out.print((moveNumber/2)+"... ");
-		Scanner scanner = new Scanner(System.in);
 		String move = scanner.nextLine();
 		return parseMove(move);
 	}
 
 	private HasamiMove parseMove(String move) {
-		move=move.toLowerCase();
-		String alfa = "["+'a'+"-"+(char)('a'+board.getBoardSize()-1)+"]";
-		String digit = "[1-"+board.getBoardSize()+"]";
-		String regexp = alfa+digit+"[xX\\-]?"+alfa+digit;
-		if(move ==null || !move.matches(regexp)){
+		HasamiMove parsed = HasamiMove.parse(move, board.getBoardSize());
+		if(parsed == null)
 			System.out.println("Erro: move="+move);
-			return null;
-		}
-		if(move.length()==5)
-			return new HasamiMove(Integer.parseInt(move.substring(1, 2))-1,
-								  move.charAt(0)-'a',
-								  Integer.parseInt(move.substring(4, 5))-1,
-								  move.charAt(3)-'a');
-		else
-			return new HasamiMove(Integer.parseInt(move.substring(1, 2))-1,
-					  move.charAt(0)-'a',
-					  Integer.parseInt(move.substring(3, 4))-1,
-					  move.charAt(2)-'a');
+		return parsed;
 	}
 
 	public static void printBoard(Board b) {
@@ -162,11 +194,37 @@ public class CLI {
     }
 
 	/**
-	 * @param args
+	 * @param args [-mode HxC|CxH|HxH|CxC] [-movetime ms] [-noponder] [-book file] [-tablebases directory] [-weights file]
 	 */
-	public static void main(String[] args) {
+	public static void main(String[] args) throws IOException {
 		System.out.println("********   CLI Hasami   ********");
-		(new CLI(MODE.HxC)).run();
+		MODE mode = MODE.HxC;
+		long moveTime = 0;
+		boolean ponder = true;
+		for(int i=0; i < args.length; i++){
+			if(args[i].equals("-mode"))
+				mode = MODE.valueOf(args[++i]);
+			else if(args[i].equals("-movetime"))
+				moveTime = Long.parseLong(args[++i]);
+			else if(args[i].equals("-noponder"))
+				ponder = false;
+		}
+		CLI cli = new CLI(mode, moveTime, ponder);
+		for(int i=0; i < args.length; i++){
+			if(args[i].equals("-mode") || args[i].equals("-movetime"))
+				i++;
+			else if(args[i].equals("-noponder"))
+				continue;
+			else if(args[i].equals("-book"))
+				cli.engine.setBook(new OpeningBook(new File(args[++i])));
+			else if(args[i].equals("-tablebases"))
+				cli.engine.setTablebase(new Tablebase(new File(args[++i])));
+			else if(args[i].equals("-weights"))
+				cli.engine.setWeights(EvalWeights.load(new File(args[++i])));
+			else
+				throw new IllegalArgumentException("Unknown option: "+args[i]);
+		}
+		cli.run();
 	}
 
 
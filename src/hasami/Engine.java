@@ -21,51 +21,426 @@ package hasami;
 
 import hasami.Board.Color;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
 public class Engine {
 
+	private static final long NO_DEADLINE = Long.MAX_VALUE;
 	private final int MAX_DEPTH;
-	private final double INFINITY=1000;
+	
+	private final SearchOptions options;
+	//-- Kept between machineMove() calls so later moves reuse earlier work. --//
+	private final TranspositionTable table;
+	//-- Shared with other Engines: its generation and contents are left to its owner. --//
+	private final boolean sharedTable;
+	//-- searchers[0] runs on the caller's thread, the others are Lazy SMP helpers. --//
+	private final Searcher[] searchers;
+	private ExecutorService helperPool;
+	
+	//-- The running search: set by start() and read by run(). --//
+	private Board searchBoard;
+	private Color searchPlayer;
+	private int searchDepth;
+	private Future<?>[] helpers;
+	private long searchStart;
+	
+	//-- Pondering: a search of the position after the predicted reply. --//
+	private ExecutorService ponderPool;
+	private Future<SearchResult> ponderSearch;
+	private long ponderHash;
+	private volatile boolean pondering;
+	
+	private OpeningBook book;
+	private EvalWeights weights = EvalWeights.DEFAULT;
+	private final Random bookRandom = new Random();
+	private int[] bookMoves = new int[0];
+	
+	private volatile SearchListener listener;
+	private SearchResult lastResult;
 	
 	public Engine(int maxdepth){
+		this(maxdepth, new SearchOptions());
+	}
+	
+	public Engine(int maxdepth, SearchOptions options){
+		this(maxdepth, options, null);
+	}
+	
+	/**
+	 * An Engine searching with a table shared with other Engines, or with its
+	 * own table of options.tableMegabytes when table is null. A shared table
+	 * is neither cleared by newGame() nor aged by each search.
+	 */
+	public Engine(int maxdepth, SearchOptions options, TranspositionTable table){
 		MAX_DEPTH = maxdepth;
+		this.options = options.copy();
+		sharedTable = table != null;
+		this.table = sharedTable ? table : new TranspositionTable(this.options.tableMegabytes);
+		searchers = new Searcher[Math.max(1, this.options.threads)];
+		for(int i=0; i < searchers.length; i++){
+			searchers[i] = new Searcher(this.table, this.options, i == 0 ? this : null);
+		}
 	}
 	
+	/**
+	 * Searches to the fixed depth given in the constructor.
+	 */
 	public HasamiMove machineMove(Board board, Color player){
-		HasamiMove move = abNegamax(board, player, 0, -INFINITY, INFINITY);
-		System.out.println("Computer eval: "+move.val);
-		return move;
+		return search(board, player, MAX_DEPTH, 0).bestMove;
 	}
-
-	private HasamiMove abNegamax(Board board, Color player, int currentDepth, double alpha, double beta){
-		if(board.isGameOver() || currentDepth==MAX_DEPTH){
-			return new HasamiMove(null, board.evaluate(player, currentDepth));
-		}
-		HasamiMove bestMove = null;
-		double bestScore = -INFINITY;
+	
+	/**
+	 * Deepens iteratively until budgetMillis runs out and returns the result of
+	 * the deepest completed iteration. The first iteration always completes.
+	 */
+	public HasamiMove machineMove(Board board, Color player, long budgetMillis){
+		return search(board, player, Searcher.MAX_PLY-1, budgetMillis).bestMove;
+	}
+	
+	/**
+	 * Deepens iteratively up to maxDepth, or until budgetMillis runs out when
+	 * it is positive, and returns the last completed iteration with its statistics.
+	 */
+	public SearchResult search(Board board, Color player, int maxDepth, long budgetMillis){
+		board.setWeights(weights);
+		SearchResult fromBook = bookMove(board);
+		if(fromBook != null)
+			return fromBook;
+		long deadline = budgetMillis > 0 ? System.nanoTime() + budgetMillis*1000000L : NO_DEADLINE;
+		maxDepth = Math.max(1, Math.min(maxDepth, Searcher.MAX_PLY-1));
+		SearchResult pondered = finishPonder(board, player, maxDepth, deadline);
+		if(pondered != null)
+			return pondered;
+		start(board, player, maxDepth, deadline);
+		return run();
+	}
+	
+	/**
+	 * Starts searching, on a background thread, the position the opponent is
+	 * expected to leave after their reply on board. If the next search is of
+	 * that position it continues this one; otherwise this one is cancelled and
+	 * only its table entries are kept.
+	 * @return the predicted reply, or null when there is nothing to ponder.
+	 */
+	public HasamiMove ponder(Board board){
+		stopPonder();
+		if(board.isGameOver())
+			return null;
+		Board predicted = new Board(board);
+		predicted.setWeights(weights);
+		int reply = tableMove(predicted, new int[predicted.getMaxMoves()], table.probe(predicted.getHash()));
+		if(reply == Board.NO_MOVE)
+			return null;
+		predicted.makeMove(reply);
+		if(predicted.isGameOver())
+			return null;
 		
-		for(HasamiMove move : board.getMoves()){
+		ponderHash = predicted.getHash();
+		pondering = true;
+		start(predicted, predicted.currentPlayer(), Searcher.MAX_PLY-1, NO_DEADLINE);
+		ponderSearch = ponderPool().submit(new Callable<SearchResult>() {
+			public SearchResult call() {
+				return run();
+			}
+		});
+		return board.toHasamiMove(reply);
+	}
+	
+	/**
+	 * True while a ponder search runs, until the search that uses or cancels it.
+	 */
+	public boolean isPondering(){
+		return ponderSearch != null;
+	}
+	
+	/**
+	 * Statistics of the last search, or null before the first one.
+	 */
+	public SearchResult getLastResult(){
+		return lastResult;
+	}
+	
+	/**
+	 * Sets the book consulted before every search; null searches every move.
+	 */
+	public void setBook(OpeningBook book){
+		this.book = book;
+	}
+	
+	/**
+	 * Sets the evaluation weights given to the boards searched; null restores
+	 * the hand-picked ones.
+	 */
+	public void setWeights(EvalWeights weights){
+		this.weights = weights == null ? EvalWeights.DEFAULT : weights.copy();
+	}
+	
+	/**
+	 * Sets the endgame tables probed during the search; null disables them.
+	 */
+	public void setTablebase(Tablebase tablebase){
+		for(Searcher searcher : searchers){
+			searcher.setTablebase(tablebase);
+		}
+	}
+	
+	/**
+	 * Registers the listener told about the progress of later searches; null removes it.
+	 */
+	public void setListener(SearchListener listener){
+		this.listener = listener;
+	}
+	
+	/**
+	 * Forgets what earlier searches stored in the transposition table.
+	 */
+	public void newGame(){
+		stopPonder();
+		if(!sharedTable)
+			table.clear();
+	}
+	
+	/**
+	 * Aborts the running search; machineMove returns its last completed iteration.
+	 */
+	public void stop(){
+		for(Searcher searcher : searchers){
+			searcher.stop();
+		}
+	}
+	
+	/**
+	 * Releases the helper threads; the next search starts new ones.
+	 */
+	public void shutdown(){
+		stopPonder();
+		if(ponderPool != null)
+			ponderPool.shutdownNow();
+		ponderPool = null;
+		if(helperPool != null)
+			helperPool.shutdownNow();
+		helperPool = null;
+	}
+	
+	//-- Callbacks of the main Searcher. --//
+	
+	void iterationCompleted(Searcher main){
+		SearchListener current = listener;
+		if(current != null && !pondering)
+			current.iterationCompleted(result(main));
+	}
+	
+	void rootMoveSearched(int depth, int moveNumber, int move, double score){
+		SearchListener current = listener;
+		if(current != null && !pondering)
+			current.rootMoveSearched(depth, moveNumber, searchBoard.toHasamiMove(move), score);
+	}
+	
+	private void start(Board board, Color player, int maxDepth, long deadline){
+		searchStart = System.nanoTime();
+		if(!sharedTable)
+			table.newSearch();
+		searchBoard = board;
+		searchPlayer = player;
+		searchDepth = maxDepth;
+		searchers[0].reset(board, deadline);
+		helpers = startHelpers(board, player, maxDepth, deadline);
+	}
+	
+	private SearchResult run(){
+		Searcher main = searchers[0];
+		main.iterativeDeepening(searchPlayer, 1, searchDepth);
+		stopHelpers(helpers);
+		lastResult = result(main);
+		lastResult.stopped = main.isStopped();
+		return lastResult;
+	}
+	
+	/**
+	 * The book move of board as a result of depth 0, or null.
+	 */
+	private SearchResult bookMove(Board board){
+		if(book == null || book.getBoardSize() != board.getBoardSize())
+			return null;
+		if(bookMoves.length < board.getMaxMoves())
+			bookMoves = new int[board.getMaxMoves()];
+		int move = tableMove(board, bookMoves, book.probe(board.getHash(), bookRandom));
+		if(move == Board.NO_MOVE)
+			return null;
+		stopPonder();
+		lastResult = new SearchResult();
+		lastResult.bestMove = new HasamiMove(board.toHasamiMove(move), 0);
+		lastResult.principalVariation = new HasamiMove[]{lastResult.bestMove};
+		lastResult.fromBook = true;
+		return lastResult;
+	}
+	
+	/**
+	 * On a ponder hit, limits the running ponder search to maxDepth and
+	 * deadline and waits for it. On a miss cancels it and returns null.
+	 */
+	private SearchResult finishPonder(Board board, Color player, int maxDepth, long deadline){
+		if(ponderSearch == null)
+			return null;
+		if(board.getHash() != ponderHash || player != searchPlayer){
+			stopPonder();
+			return null;
+		}
+		pondering = false;
+		for(Searcher searcher : searchers){
+			searcher.limit(searcher == searchers[0] ? maxDepth : Searcher.MAX_PLY-1, deadline);
+		}
+		SearchResult result = awaitPonder();
+		result.ponderHit = true;
+		//Cut short at maxDepth is not stopped early.
+		result.stopped &= result.depth < maxDepth;
+		return result;
+	}
+	
+	private void stopPonder(){
+		if(ponderSearch == null)
+			return;
+		stop();
+		awaitPonder();
+	}
+	
+	private SearchResult awaitPonder(){
+		try {
+			return ponderSearch.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while pondering", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Ponder search failed", e.getCause());
+		} finally {
+			ponderSearch = null;
+			pondering = false;
+		}
+	}
+	
+	/**
+	 * Collects the main searcher's best line and the counters of all searchers.
+	 */
+	private SearchResult result(Searcher main){
+		SearchResult result = new SearchResult();
+		int bestMove = main.getBestMove();
+		result.score = main.getBestScore();
+		if(bestMove != Board.NO_MOVE)
+			result.bestMove = new HasamiMove(searchBoard.toHasamiMove(bestMove), result.score);
+		result.depth = main.getCompletedDepth();
+		for(Searcher searcher : searchers){
+			result.nodes += searcher.getNodes();
+			result.cutoffs += searcher.getOrdering().getCutoffs();
+			result.firstMoveCutoffs += searcher.getOrdering().getFirstMoveCutoffs();
+			result.tableProbes += searcher.getTableProbes();
+			result.tableHits += searcher.getTableHits();
+			result.tablebaseHits += searcher.getTablebaseHits();
+		}
+		result.elapsedMillis = (System.nanoTime() - searchStart)/1000000;
+		result.principalVariation = principalVariation(bestMove, result.depth);
+		return result;
+	}
+	
+	/**
+	 * Follows the table moves from the searched position, starting with bestMove.
+	 */
+	private HasamiMove[] principalVariation(int bestMove, int depth){
+		List<HasamiMove> line = new ArrayList<HasamiMove>();
+		Board board = new Board(searchBoard);
+		int[] moves = new int[board.getMaxMoves()];
+		int move = tableMove(board, moves, bestMove);
+		while(move != Board.NO_MOVE && line.size() < depth){
+			line.add(board.toHasamiMove(move));
 			board.makeMove(move);
-			HasamiMove currentMove = abNegamax(board,
-									player,
-									currentDepth+1,
-									-beta,
-									-Math.max(alpha, bestScore));
-			
-			double currentScore = -currentMove.val;
-			
-			if(currentScore > bestScore){
-				bestScore = currentScore;
-				bestMove = move;
-				if(bestScore >= beta){
-					board.undoMove(move);
-					return new HasamiMove(bestMove, bestScore);
+			move = tableMove(board, moves, table.probe(board.getHash()));
+		}
+		return line.toArray(new HasamiMove[line.size()]);
+	}
+	
+	/**
+	 * The legal move of board with the squares of entry's move, or NO_MOVE.
+	 */
+	private static int tableMove(Board board, int[] moves, long entry){
+		int squares = TranspositionTable.move(entry);
+		if(squares == Board.NO_MOVE || board.isGameOver())
+			return Board.NO_MOVE;
+		int count = board.generateMoves(moves);
+		for(int i=0; i < count; i++){
+			if(TranspositionTable.move(moves[i]) == squares)
+				return moves[i];
+		}
+		return Board.NO_MOVE;
+	}
+	
+	/**
+	 * Lazy SMP: helpers deepen on their own copy of the board, half of them
+	 * one ply ahead, and feed the main search through the shared table.
+	 */
+	private Future<?>[] startHelpers(Board board, final Color player, int maxDepth, long deadline) {
+		Future<?>[] helpers = new Future<?>[searchers.length-1];
+		if(helpers.length == 0)
+			return helpers;
+		ExecutorService pool = helperPool();
+		for(int i=1; i < searchers.length; i++){
+			final Searcher helper = searchers[i];
+			final int firstDepth = 1 + (i & 1);
+			final int lastDepth = Math.min(maxDepth + firstDepth-1, Searcher.MAX_PLY-1);
+			helper.reset(new Board(board), deadline);
+			helpers[i-1] = pool.submit(new Runnable() {
+				public void run() {
+					helper.iterativeDeepening(player, firstDepth, lastDepth);
 				}
+			});
+		}
+		return helpers;
+	}
+	
+	private void stopHelpers(Future<?>[] helpers) {
+		for(int i=1; i < searchers.length; i++){
+			searchers[i].stop();
+		}
+		for(Future<?> helper : helpers){
+			try {
+				if(helper != null)
+					helper.get();
+			} catch (Exception e) {
+				throw new RuntimeException("Helper search failed", e);
 			}
-			
-			board.undoMove(move);	
-		}//end of for looping.
-		
-		return new HasamiMove(bestMove, bestScore);
+		}
+	}
+	
+	private ExecutorService ponderPool() {
+		if(ponderPool == null){
+			ponderPool = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "hasami-ponder");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return ponderPool;
+	}
+	
+	private ExecutorService helperPool() {
+		if(helperPool == null){
+			helperPool = Executors.newFixedThreadPool(searchers.length-1, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "hasami-helper");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return helperPool;
 	}
 	
 }//end class.
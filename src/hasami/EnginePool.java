@@ -0,0 +1,94 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A fixed set of Engines shared by many games. A game borrows an engine for
+ * one search and gives it back; when all are busy acquire() waits, so the
+ * pool size bounds the CPU taken by searches.
+ */
+public class EnginePool {
+
+	private final List<Engine> engines = new ArrayList<Engine>();
+	private final BlockingQueue<Engine> idle;
+	
+	public EnginePool(int size, int maxDepth, SearchOptions options){
+		idle = new ArrayBlockingQueue<Engine>(size);
+		for(int i=0; i < size; i++){
+			Engine engine = new Engine(maxDepth, options);
+			engines.add(engine);
+			idle.add(engine);
+		}
+	}
+	
+	public Engine acquire() throws InterruptedException {
+		return idle.take();
+	}
+	
+	/**
+	 * Gives back an engine from acquire(), dropping the listener its user set.
+	 */
+	public void release(Engine engine){
+		engine.setListener(null);
+		idle.add(engine);
+	}
+	
+	public int size(){
+		return engines.size();
+	}
+	
+	/**
+	 * Engines searching at the moment.
+	 */
+	public int busy(){
+		return engines.size() - idle.size();
+	}
+	
+	public void setBook(OpeningBook book){
+		for(Engine engine : engines){
+			engine.setBook(book);
+		}
+	}
+	
+	public void setWeights(EvalWeights weights){
+		for(Engine engine : engines){
+			engine.setWeights(weights);
+		}
+	}
+	
+	public void setTablebase(Tablebase tablebase){
+		for(Engine engine : engines){
+			engine.setTablebase(tablebase);
+		}
+	}
+	
+	public void shutdown(){
+		for(Engine engine : engines){
+			engine.stop();
+			engine.shutdown();
+		}
+	}
+	
+}//end class.
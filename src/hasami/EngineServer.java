@@ -0,0 +1,375 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import hasami.Board.Color;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Serves the engine through a line protocol, on stdin/stdout or to any
+ * number of local TCP connections. Every connection is a session with its
+ * own Board; searches borrow an Engine from a shared EnginePool.
+ * <pre>
+ * hasami                           -> id name ..., hasamiok
+ * isready                          -> readyok
+ * newgame [size]
+ * position startpos [moves m...]
+ * position board SQUARES SIDE [moves m...]
+ * go [depth n] [movetime ms] [infinite] -> info ..., bestmove m [ponder m] | bestmove none
+ * stop
+ * quit
+ * </pre>
+ * SQUARES lists every square from A1, B1, ... to the last line as O (white),
+ * X (black) or '.'; SIDE is w or b. Moves are written like A1-A5. A go
+ * without limits searches until stop. Each
+ * completed iteration of a search is reported as "info depth ... pv ...".
+ * Errors are reported as "info string error: ..."; a go always ends with
+ * a bestmove, "bestmove none" when its search failed.
+ */
+public class EngineServer {
+
+	private static final String NAME = "hasami";
+	
+	private final EnginePool pool;
+	//-- Runs the searches of every session, so readers stay free to take stop. --//
+	private final ExecutorService searches = Executors.newCachedThreadPool();
+	
+	public EngineServer(EnginePool pool){
+		this.pool = pool;
+	}
+	
+	/**
+	 * Serves one session on the given streams until quit or end of input.
+	 */
+	public void serve(InputStream input, OutputStream output) throws IOException {
+		new Session(input, output).run();
+	}
+	
+	/**
+	 * Accepts connections on the loopback interface, one session each, until
+	 * the server socket fails.
+	 */
+	public void listen(int port) throws IOException {
+		ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		ExecutorService sessions = Executors.newCachedThreadPool();
+		try {
+			while(true){
+				final Socket socket = server.accept();
+				sessions.execute(new Runnable() {
+					public void run() {
+						try {
+							serve(socket.getInputStream(), socket.getOutputStream());
+						} catch (IOException e) {
+							//The client went away.
+						} finally {
+							try {
+								socket.close();
+							} catch (IOException e) {
+							}
+						}
+					}
+				});
+			}
+		} finally {
+			server.close();
+			sessions.shutdownNow();
+		}
+	}
+	
+	public void shutdown(){
+		searches.shutdownNow();
+		pool.shutdown();
+	}
+	
+	/**
+	 * The state of one client: its position and its running search.
+	 */
+	private class Session implements SearchListener {
+		
+		private final BufferedReader input;
+		private final PrintWriter output;
+		private Board board = new Board(9);
+		private Future<?> search;
+		//-- The engine of the running search, null while it waits for one. Guarded by engineLock, --//
+		//-- which is held while stopping it and while giving it back, so a stop never reaches an --//
+		//-- engine another session has borrowed since. --//
+		private final Object engineLock = new Object();
+		private Engine engine;
+		
+		Session(InputStream input, OutputStream output) throws IOException {
+			this.input = new BufferedReader(new InputStreamReader(input, "ISO-8859-1"));
+			this.output = new PrintWriter(new OutputStreamWriter(output, "ISO-8859-1"));
+		}
+		
+		void run() throws IOException {
+			try {
+				for(String line=input.readLine(); line != null; line=input.readLine()){
+					String[] words = line.trim().split("\\s+");
+					try {
+						if(!execute(words))
+							break;
+					} catch (RuntimeException e) {
+						send("info string error: "+e.getMessage());
+					}
+				}
+			} finally {
+				stopSearch();
+			}
+		}
+		
+		/**
+		 * @return false when the session ends.
+		 */
+		private boolean execute(String[] words){
+			String command = words[0];
+			if(command.equals("hasami")){
+				send("id name "+NAME);
+				send("option engines "+pool.size());
+				send("hasamiok");
+			}else if(command.equals("isready")){
+				send("readyok");
+			}else if(command.equals("newgame")){
+				stopSearch();
+				board = new Board(words.length > 1 ? Integer.parseInt(words[1]) : board.getBoardSize());
+			}else if(command.equals("position")){
+				stopSearch();
+				position(words);
+			}else if(command.equals("go")){
+				stopSearch();
+				go(words);
+			}else if(command.equals("stop")){
+				stopSearch();
+			}else if(command.equals("quit")){
+				return false;
+			}else if(command.length() > 0){
+				throw new IllegalArgumentException("unknown command "+command);
+			}
+			return true;
+		}
+		
+		private void position(String[] words){
+			if(words.length < 2)
+				throw new IllegalArgumentException("position needs startpos or board");
+			int next;
+			Board position;
+			if(words[1].equals("startpos")){
+				position = new Board(board.getBoardSize());
+				next = 2;
+			}else if(words[1].equals("board") && words.length >= 4){
+				position = parseBoard(words[2], words[3]);
+				next = 4;
+			}else{
+				throw new IllegalArgumentException("position needs startpos or board");
+			}
+			if(next < words.length){
+				if(!words[next].equals("moves"))
+					throw new IllegalArgumentException("expected moves: "+words[next]);
+				for(int i=next+1; i < words.length; i++){
+					HasamiMove move = HasamiMove.parse(words[i], position.getBoardSize());
+					if(move == null || position.isGameOver() || !position.getMoves().contains(move))
+						throw new IllegalArgumentException("illegal move "+words[i]);
+					position.makeMove(move);
+				}
+			}
+			board = position;
+		}
+		
+		private Board parseBoard(String squares, String side){
+			int size = (int) Math.round(Math.sqrt(squares.length()));
+			if(size*size != squares.length() || !(side.equals("w") || side.equals("b")))
+				throw new IllegalArgumentException("bad board "+squares+" "+side);
+			int[] white = new int[squares.length()];
+			int[] black = new int[squares.length()];
+			int whites = 0;
+			int blacks = 0;
+			for(int sq=0; sq < squares.length(); sq++){
+				char piece = squares.charAt(sq);
+				if(piece == 'O')
+					white[whites++] = sq;
+				else if(piece == 'X')
+					black[blacks++] = sq;
+				else if(piece != '.')
+					throw new IllegalArgumentException("bad square "+piece);
+			}
+			if(whites > size || blacks > size)
+				throw new IllegalArgumentException("too many pieces "+whites+" "+blacks);
+			Board position = new Board(size);
+			position.setPosition(Arrays.copyOf(white, whites), Arrays.copyOf(black, blacks),
+					side.equals("w") ? Color.WHITE : Color.BLACK);
+			return position;
+		}
+		
+		private void go(String[] words){
+			int depth = Integer.MAX_VALUE;
+			long moveTime = 0;
+			for(int i=1; i < words.length; i++){
+				if(words[i].equals("depth") && i+1 < words.length)
+					depth = Integer.parseInt(words[++i]);
+				else if(words[i].equals("movetime") && i+1 < words.length)
+					moveTime = Long.parseLong(words[++i]);
+				else if(!words[i].equals("infinite"))
+					throw new IllegalArgumentException("bad go argument "+words[i]);
+			}
+			final Board position = new Board(board);
+			final int maxDepth = depth;
+			final long budget = moveTime;
+			search = searches.submit(new Runnable() {
+				public void run() {
+					search(position, maxDepth, budget);
+				}
+			});
+		}
+		
+		private void search(Board position, int maxDepth, long budget){
+			if(position.isGameOver()){
+				send("bestmove none");
+				return;
+			}
+			Engine borrowed;
+			try {
+				borrowed = pool.acquire();
+			} catch (InterruptedException e) {
+				send("bestmove none");
+				return;
+			}
+			try {
+				borrowed.setListener(this);
+				synchronized(engineLock){
+					engine = borrowed;
+				}
+				SearchResult result = borrowed.search(position, position.currentPlayer(), maxDepth, budget);
+				HasamiMove[] line = result.principalVariation;
+				if(result.bestMove == null)
+					send("bestmove none");
+				else
+					send("bestmove "+result.bestMove.toString().trim()+(line.length > 1 ? " ponder "+line[1].toString().trim() : ""));
+			} catch (RuntimeException e) {
+				//The client waits for a bestmove whatever happens.
+				send("info string error: "+e);
+				send("bestmove none");
+			} finally {
+				synchronized(engineLock){
+					engine = null;
+					pool.release(borrowed);
+				}
+			}
+		}
+		
+		/**
+		 * Stops the running search, if any, and waits for its bestmove.
+		 */
+		private void stopSearch(){
+			if(search == null)
+				return;
+			//Repeated, as a stop that comes before the search has started is lost.
+			while(!search.isDone()){
+				synchronized(engineLock){
+					if(engine != null)
+						engine.stop();
+				}
+				try {
+					search.get(10, TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				} catch (ExecutionException e) {
+					send("info string error: "+e.getCause());
+				}
+			}
+			search = null;
+		}
+		
+		public void iterationCompleted(SearchResult result){
+			send("info "+result);
+		}
+		
+		public void rootMoveSearched(int depth, int moveNumber, HasamiMove move, double score){
+		}
+		
+		private void send(String line){
+			synchronized(output){
+				output.println(line);
+				output.flush();
+			}
+		}
+	}
+	
+	/**
+	 * Usage: EngineServer [-port n] [-engines n] [-book file] [-tablebases directory] [-weights file] [name=value...]
+	 * Without a port the server talks on stdin/stdout. The names are SearchOptions fields.
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = 0;
+		int engines = Runtime.getRuntime().availableProcessors();
+		SearchOptions options = new SearchOptions();
+		OpeningBook book = null;
+		Tablebase tablebase = null;
+		EvalWeights weights = null;
+		for(int i=0; i < args.length; i++){
+			if(args[i].equals("-port"))
+				port = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-engines"))
+				engines = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-book"))
+				book = new OpeningBook(new File(args[++i]));
+			else if(args[i].equals("-tablebases"))
+				tablebase = new Tablebase(new File(args[++i]));
+			else if(args[i].equals("-weights"))
+				weights = EvalWeights.load(new File(args[++i]));
+			else if(args[i].indexOf('=') > 0)
+				options.setAll(args[i]);
+			else
+				throw new IllegalArgumentException("Unknown option: "+args[i]);
+		}
+		EnginePool pool = new EnginePool(engines, 4, options);
+		pool.setBook(book);
+		pool.setTablebase(tablebase);
+		pool.setWeights(weights);
+		EngineServer server = new EngineServer(pool);
+		try {
+			if(port > 0)
+				server.listen(port);
+			else
+				server.serve(System.in, System.out);
+		} finally {
+			server.shutdown();
+		}
+	}
+	
+}//end class.
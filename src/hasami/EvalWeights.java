@@ -0,0 +1,132 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * The weights of the evaluation terms, as a vector indexed by the term
+ * constants. Each term is the white value minus the black one; evaluate()
+ * is the weighted sum from the side to move's point of view. Weights are
+ * saved and loaded as "name=value" lines.
+ */
+public class EvalWeights {
+
+	//-- Terms of evaluate(). --//
+	public static final int PIECES = 0;
+	public static final int ATTACKS = 1;
+	public static final int DEFENCES = 2;
+	public static final int CORNERS = 3;
+	/** Half the advance, the sum of the rows each piece has left its home side by. */
+	public static final int ADVANCE = 4;
+	/** Sides open to a sandwich: an enemy on one side and an empty square on the other. */
+	public static final int THREATS = 5;
+	/** Pieces against the edge with an enemy alongside. */
+	public static final int EDGES = 6;
+	//-- evaluateFast() weighs only the pieces and the advance. --//
+	public static final int FAST_ADVANCE = 7;
+	
+	public static final String[] NAMES = {"pieces", "attacks", "defences", "corners", "advance", "threats", "edges", "fastAdvance"};
+	public static final int SIZE = NAMES.length;
+	
+	/** The hand-picked weights, used by boards given no others; never handed out, as they are shared. */
+	static final EvalWeights DEFAULT = new EvalWeights();
+	
+	final double[] values = {1, 0.15, 0.05, 0.09, 0.05, 0, 0, 0.1};
+	
+	public double get(int term){
+		return values[term];
+	}
+	
+	public void set(int term, double value){
+		values[term] = value;
+	}
+	
+	/**
+	 * Sets the weight called name from text, e.g. set("attacks", "0.2").
+	 */
+	public void set(String name, String value){
+		int term = Arrays.asList(NAMES).indexOf(name);
+		if(term < 0)
+			throw new IllegalArgumentException("Unknown weight: "+name);
+		values[term] = Double.parseDouble(value);
+	}
+	
+	public double[] toArray(){
+		return values.clone();
+	}
+	
+	public EvalWeights copy(){
+		EvalWeights copy = new EvalWeights();
+		System.arraycopy(values, 0, copy.values, 0, SIZE);
+		return copy;
+	}
+	
+	/**
+	 * Reads weights written by save(); missing names keep their default.
+	 */
+	public static EvalWeights load(File file) throws IOException {
+		EvalWeights weights = new EvalWeights();
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		try {
+			for(String line=in.readLine(); line != null; line=in.readLine()){
+				line = line.trim();
+				if(line.isEmpty() || line.startsWith("#"))
+					continue;
+				int equals = line.indexOf('=');
+				if(equals < 0)
+					throw new IOException("Expected name=value in "+file+": "+line);
+				weights.set(line.substring(0, equals).trim(), line.substring(equals+1).trim());
+			}
+		} finally {
+			in.close();
+		}
+		return weights;
+	}
+	
+	public void save(File file) throws IOException {
+		PrintWriter out = new PrintWriter(new FileWriter(file));
+		try {
+			for(int term=0; term < SIZE; term++){
+				out.println(NAMES[term]+"="+values[term]);
+			}
+		} finally {
+			out.close();
+		}
+		if(out.checkError())
+			throw new IOException("Cannot write "+file);
+	}
+	
+	@Override
+	public String toString(){
+		StringBuilder text = new StringBuilder();
+		for(int term=0; term < SIZE; term++){
+			text.append(term == 0 ? "" : " ").append(NAMES[term]).append('=').append(String.format("%.4f", values[term]));
+		}
+		return text.toString();
+	}
+	
+}//end class.
@@ -0,0 +1,229 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * An append-only store of games in two memory-mapped files: the records,
+ * and an index of their offsets for random access. Each record is
+ * <pre>
+ * int length, byte result, short plies, start position (PositionCodec), short move * plies
+ * </pre>
+ * Both files are mapped in segments of SEGMENT_BYTES, and records never
+ * cross a segment boundary. A game becomes visible to readers when the
+ * count in the index header is updated, after its record and offset are
+ * written. Appends are serialized; reads may run concurrently with them.
+ */
+public class GameLog implements Closeable {
+
+	public static final int UNKNOWN = 0;
+	public static final int WHITE_WINS = 1;
+	public static final int BLACK_WINS = 2;
+	public static final int DRAW = 3;
+	
+	static final int MAGIC = 0x48534C47; //"HSLG"
+	static final int VERSION = 1;
+	static final int SEGMENT_SHIFT = 26;
+	static final long SEGMENT_BYTES = 1L << SEGMENT_SHIFT;
+	//-- Data file: magic, version; index file: magic, version, count, then one long offset per game. --//
+	private static final int DATA_HEADER = 8;
+	private static final int INDEX_HEADER = 16;
+	private static final int RECORD_HEADER = 7;
+	
+	private final RandomAccessFile dataFile;
+	private final RandomAccessFile indexFile;
+	private volatile MappedByteBuffer[] data = new MappedByteBuffer[0];
+	private volatile MappedByteBuffer[] index = new MappedByteBuffer[0];
+	private volatile long count;
+	private long end;
+	
+	/**
+	 * Opens the log at file, and its index at file.idx, creating both if needed.
+	 */
+	public GameLog(File file) throws IOException {
+		dataFile = new RandomAccessFile(file, "rw");
+		indexFile = new RandomAccessFile(new File(file.getPath()+".idx"), "rw");
+		boolean created = indexFile.length() == 0;
+		MappedByteBuffer dataHeader = segment(false, 0);
+		MappedByteBuffer indexHeader = segment(true, 0);
+		if(created){
+			dataHeader.putInt(0, MAGIC).putInt(4, VERSION);
+			indexHeader.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, 0);
+		}else if(dataHeader.getInt(0) != MAGIC || indexHeader.getInt(0) != MAGIC || indexHeader.getInt(4) != VERSION){
+			close();
+			throw new IOException("Not a game log: "+file);
+		}
+		count = indexHeader.getLong(8);
+		end = DATA_HEADER;
+		if(count > 0){
+			long last = offset(count-1);
+			end = last + segment(false, last).getInt(position(last));
+		}
+	}
+	
+	/**
+	 * Number of games in the log.
+	 */
+	public long size(){
+		return count;
+	}
+	
+	/**
+	 * Appends a game: its start position and the packed moves played from it.
+	 * @return the number of the game.
+	 */
+	public synchronized long append(Board start, int[] moves, int plies, int result) throws IOException {
+		int length = RECORD_HEADER + PositionCodec.encodedLength(start.getBoardSize()) + 2*plies;
+		if(plies > Short.MAX_VALUE*2+1 || length > SEGMENT_BYTES)
+			throw new IllegalArgumentException("Game too long: "+plies+" plies");
+		//Records do not cross segments: skip to the next one.
+		if(position(end) + length > SEGMENT_BYTES)
+			end = (segmentOf(end) + 1) << SEGMENT_SHIFT;
+		ByteBuffer buffer = segment(false, end).duplicate();
+		buffer.position(position(end));
+		buffer.putInt(length).put((byte) result).putShort((short) plies);
+		PositionCodec.encode(start, buffer);
+		for(int i=0; i < plies; i++){
+			buffer.putShort(PositionCodec.encodeMove(moves[i]));
+		}
+		
+		long game = count;
+		long entry = INDEX_HEADER + 8*game;
+		segment(true, entry).putLong(position(entry), end);
+		end += length;
+		segment(true, 0).putLong(8, game+1);
+		count = game+1;
+		return game;
+	}
+	
+	public int result(long game){
+		long offset = offset(game);
+		return segment(false, offset).get(position(offset) + 4);
+	}
+	
+	public int plies(long game){
+		long offset = offset(game);
+		return segment(false, offset).getShort(position(offset) + 5) & 0xFFFF;
+	}
+	
+	/**
+	 * The from/to squares of the move at ply, as in Board.packMove without captures.
+	 */
+	public int move(long game, int ply){
+		if(ply < 0 || ply >= plies(game))
+			throw new IndexOutOfBoundsException("Ply "+ply+" of game "+game);
+		long offset = offset(game);
+		MappedByteBuffer buffer = segment(false, offset);
+		int moves = position(offset) + RECORD_HEADER + PositionCodec.encodedLength(buffer.get(position(offset) + RECORD_HEADER) >>> 1);
+		return buffer.getShort(moves + 2*ply) & 0xFFFF;
+	}
+	
+	/**
+	 * The position of game after ply moves, 0 being the start position.
+	 */
+	public Board position(long game, int ply){
+		int plies = plies(game);
+		if(ply < 0 || ply > plies)
+			throw new IndexOutOfBoundsException("Ply "+ply+" of game "+game);
+		long offset = offset(game);
+		ByteBuffer buffer = segment(false, offset).duplicate();
+		buffer.position(position(offset) + RECORD_HEADER);
+		Board board = PositionCodec.decode(buffer);
+		int[] moves = new int[board.getMaxMoves()];
+		for(int i=0; i < ply; i++){
+			board.makeMove(PositionCodec.decodeMove(board, buffer.getShort(), moves));
+		}
+		return board;
+	}
+	
+	/**
+	 * Writes the mapped pages to disk.
+	 */
+	public synchronized void flush(){
+		for(MappedByteBuffer segment : data){
+			segment.force();
+		}
+		for(MappedByteBuffer segment : index){
+			segment.force();
+		}
+	}
+	
+	public synchronized void close() throws IOException {
+		flush();
+		dataFile.close();
+		indexFile.close();
+	}
+	
+	private long offset(long game){
+		if(game < 0 || game >= count)
+			throw new IndexOutOfBoundsException("Game "+game+" of "+count);
+		long entry = INDEX_HEADER + 8*game;
+		return segment(true, entry).getLong(position(entry));
+	}
+	
+	private static int segmentOf(long offset){
+		return (int) (offset >>> SEGMENT_SHIFT);
+	}
+	
+	private static int position(long offset){
+		return (int) (offset & (SEGMENT_BYTES-1));
+	}
+	
+	/**
+	 * The mapped segment holding offset, mapping it (and growing the file) if needed.
+	 */
+	private MappedByteBuffer segment(boolean ofIndex, long offset){
+		int segment = segmentOf(offset);
+		MappedByteBuffer[] segments = ofIndex ? index : data;
+		if(segment < segments.length)
+			return segments[segment];
+		return map(ofIndex, segment);
+	}
+	
+	private synchronized MappedByteBuffer map(boolean ofIndex, int segment){
+		MappedByteBuffer[] segments = ofIndex ? index : data;
+		if(segment < segments.length)
+			return segments[segment];
+		RandomAccessFile file = ofIndex ? indexFile : dataFile;
+		segments = Arrays.copyOf(segments, segment+1);
+		try {
+			for(int i=0; i <= segment; i++){
+				if(segments[i] == null)
+					segments[i] = file.getChannel().map(FileChannel.MapMode.READ_WRITE, i*SEGMENT_BYTES, SEGMENT_BYTES);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot map the game log", e);
+		}
+		if(ofIndex)
+			index = segments;
+		else
+			data = segments;
+		return segments[segment];
+	}
+	
+}//end class.
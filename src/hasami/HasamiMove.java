@@ -65,6 +65,26 @@ public class HasamiMove {
 		//return "("+startLine+","+startCol+")->("+endLine+","+endCol+")";
 	//}
 	
+	/**
+	 * Parses moves such as "a1-a5", "a1xa5" or "a1a5" on a board of the given size.
+	 * Returns null when the text is not a move.
+	 */
+	public static HasamiMove parse(String move, int boardSize){
+		if(move == null)
+			return null;
+		move=move.trim().toLowerCase();
+		String alfa = "["+'a'+"-"+(char)('a'+boardSize-1)+"]";
+		String digit = "[1-"+boardSize+"]";
+		String regexp = alfa+digit+"[xX\\-]?"+alfa+digit;
+		if(!move.matches(regexp))
+			return null;
+		int end = move.length()-2;
+		return new HasamiMove(move.charAt(1)-'1',
+							  move.charAt(0)-'a',
+							  move.charAt(end+1)-'1',
+							  move.charAt(end)-'a');
+	}
+	
 	@Override
 	public String toString(){
 		return " "+getCol(startCol)+""+getLine(startLine)+"-"+getCol(endCol)+""+getLine(endLine)+" ";
@@ -0,0 +1,147 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+/**
+ * Orders the moves of one Searcher: hash or PV move first, then captures
+ * by number of pieces captured, then the killer moves of the ply, then the
+ * remaining moves by their history score.
+ */
+class MoveOrdering {
+
+	private static final int HASH_SCORE = 1 << 30;
+	private static final int CAPTURE_SCORE = 1 << 29;
+	private static final int KILLER_SCORE = 1 << 28;
+	private static final int HISTORY_LIMIT = 1 << 24;
+	private static final int SQUARES = Board.MAX_SIZE*Board.MAX_SIZE;
+	
+	private final int[][] killers;
+	private final int[] history;
+	
+	//-- Beta cutoffs seen, and how many of them came from the first move searched. --//
+	private long cutoffs;
+	private long firstMoveCutoffs;
+	
+	MoveOrdering(int maxPly){
+		killers = new int[maxPly][2];
+		history = new int[SQUARES*SQUARES];
+	}
+	
+	/**
+	 * Called before each search: killers are forgotten, history is aged.
+	 */
+	void newSearch(){
+		for(int[] slots : killers){
+			slots[0] = Board.NO_MOVE;
+			slots[1] = Board.NO_MOVE;
+		}
+		ageHistory();
+		cutoffs = 0;
+		firstMoveCutoffs = 0;
+	}
+	
+	/**
+	 * Fills scores for the count moves; hashMove holds the squares of the
+	 * table move (see TranspositionTable.move) or Board.NO_MOVE.
+	 */
+	void score(int[] moves, int[] scores, int count, int ply, int hashMove){
+		int killer0 = killers[ply][0];
+		int killer1 = killers[ply][1];
+		for(int i=0; i < count; i++){
+			int move = moves[i];
+			int squares = TranspositionTable.move(move);
+			int captures = Board.moveCaptures(move);
+			if(squares == hashMove)
+				scores[i] = HASH_SCORE;
+			else if(captures > 0)
+				scores[i] = CAPTURE_SCORE + captures;
+			else if(squares == killer0)
+				scores[i] = KILLER_SCORE + 1;
+			else if(squares == killer1)
+				scores[i] = KILLER_SCORE;
+			else
+				scores[i] = history[index(move)];
+		}
+	}
+	
+	/**
+	 * Selects the best scored move of index..count-1, swaps it into index and returns it.
+	 */
+	int next(int[] moves, int[] scores, int index, int count){
+		int best = index;
+		for(int i=index+1; i < count; i++){
+			if(scores[i] > scores[best])
+				best = i;
+		}
+		int move = moves[best];
+		moves[best] = moves[index];
+		moves[index] = move;
+		int score = scores[best];
+		scores[best] = scores[index];
+		scores[index] = score;
+		return move;
+	}
+	
+	/**
+	 * Records that move, searched as the index-th move of its node, failed high.
+	 */
+	void cutoff(int move, int ply, int depthLeft, int index){
+		cutoffs++;
+		if(index == 0)
+			firstMoveCutoffs++;
+		if(Board.moveCaptures(move) > 0)
+			return;
+		int squares = TranspositionTable.move(move);
+		if(killers[ply][0] != squares){
+			killers[ply][1] = killers[ply][0];
+			killers[ply][0] = squares;
+		}
+		int i = index(move);
+		history[i] += depthLeft*depthLeft;
+		if(history[i] > HISTORY_LIMIT)
+			ageHistory();
+	}
+	
+	/**
+	 * True for scores of moves that are neither hash, capture nor killer moves.
+	 */
+	static boolean isQuiet(int score){
+		return score < KILLER_SCORE;
+	}
+	
+	long getCutoffs(){
+		return cutoffs;
+	}
+	
+	long getFirstMoveCutoffs(){
+		return firstMoveCutoffs;
+	}
+	
+	private void ageHistory(){
+		for(int i=0; i < history.length; i++){
+			history[i] >>= 1;
+		}
+	}
+	
+	private static int index(int move){
+		return Board.moveFrom(move)*SQUARES + Board.moveTo(move);
+	}
+	
+}//end class.
@@ -0,0 +1,161 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * A read-only opening book mapped into memory. The file is a 16 byte header
+ * (magic, version, board size, entry count) followed by 16 byte entries
+ * (position hash, move, weight) sorted by hash. The move is the from/to part
+ * of a packed move; the captures follow from the position. Lookups do not
+ * allocate, so a single book may be shared by every Engine.
+ */
+public class OpeningBook {
+
+	static final int MAGIC = 0x48534F42; //"HSOB"
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 16;
+	static final int ENTRY_BYTES = 16;
+	
+	private final ByteBuffer entries;
+	private final int boardSize;
+	private final int count;
+	
+	public OpeningBook(File file) throws IOException {
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			MappedByteBuffer map = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+			if(map.capacity() < HEADER_BYTES || map.getInt(0) != MAGIC || map.getInt(4) != VERSION)
+				throw new IOException("Not an opening book: "+file);
+			boardSize = map.getInt(8);
+			count = map.getInt(12);
+			if(map.capacity() != HEADER_BYTES + (long) count*ENTRY_BYTES)
+				throw new IOException("Truncated opening book: "+file);
+			map.position(HEADER_BYTES);
+			entries = map.slice();
+		} finally {
+			//The mapping stays valid after the channel is closed.
+			input.close();
+		}
+	}
+	
+	public int getBoardSize(){
+		return boardSize;
+	}
+	
+	public int size(){
+		return count;
+	}
+	
+	/**
+	 * Picks one of the book moves of the position with key, with a probability
+	 * proportional to its weight.
+	 * @return the move's from/to squares as in Board.packMove, or Board.NO_MOVE.
+	 */
+	public int probe(long key, Random random){
+		int first = find(key);
+		if(first < 0)
+			return Board.NO_MOVE;
+		long total = 0;
+		int last = first;
+		for(; last < count && key(last) == key; last++){
+			total += weight(last);
+		}
+		long pick = (long) (random.nextDouble() * total);
+		for(int i=first; i < last; i++){
+			pick -= weight(i);
+			if(pick < 0)
+				return move(i);
+		}
+		return move(first);
+	}
+	
+	/**
+	 * Index of the first entry of key, or -1.
+	 */
+	int find(long key){
+		int low = 0;
+		int high = count;
+		while(low < high){
+			int middle = (low + high) >>> 1;
+			if(key(middle) < key)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low < count && key(low) == key ? low : -1;
+	}
+	
+	long key(int index){
+		return entries.getLong(index*ENTRY_BYTES);
+	}
+	
+	int move(int index){
+		return entries.getInt(index*ENTRY_BYTES + 8);
+	}
+	
+	int weight(int index){
+		return entries.getInt(index*ENTRY_BYTES + 12);
+	}
+	
+	/**
+	 * Writes a book file. Keys are compared as signed longs; entries with
+	 * the same key keep their order.
+	 */
+	static void write(File file, int boardSize, long[] keys, int[] moves, int[] weights) throws IOException {
+		Integer[] order = new Integer[keys.length];
+		for(int i=0; i < order.length; i++){
+			order[i] = i;
+		}
+		final long[] sortKeys = keys;
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Long.compare(sortKeys[a], sortKeys[b]);
+			}
+		});
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(boardSize);
+			output.writeInt(keys.length);
+			for(int i : order){
+				output.writeLong(keys[i]);
+				output.writeInt(moves[i]);
+				output.writeInt(weights[i]);
+			}
+		} finally {
+			output.close();
+		}
+	}
+	
+}//end class.
@@ -0,0 +1,184 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the leaf nodes of the move tree to a fixed depth. Positions with a
+ * winner have no children; repetitions are not draws here, so the counts do
+ * not depend on the repetition limit. The last ply is bulk counted: the
+ * number of generated moves is used without playing them.
+ */
+public class Perft {
+
+	private Perft(){
+	}
+	
+	public static long perft(Board board, int depth){
+		return count(board, depth, new int[Math.max(depth, 1)][board.getMaxMoves()], 0);
+	}
+	
+	/**
+	 * Leaf counts below each root move, in generation order.
+	 */
+	public static Map<HasamiMove, Long> divide(Board board, int depth){
+		return divide(board, depth, null);
+	}
+	
+	/**
+	 * Like divide(board, depth), splitting the root moves over a fork-join
+	 * pool; each task searches its own copy of the board.
+	 */
+	public static Map<HasamiMove, Long> divide(Board board, int depth, ForkJoinPool pool){
+		int[] moves = new int[board.getMaxMoves()];
+		int count = board.hasWinner() || depth < 1 ? 0 : board.generateMoves(moves);
+		long[] leaves = new long[count];
+		
+		if(pool == null){
+			int[][] buffers = new int[Math.max(depth-1, 1)][board.getMaxMoves()];
+			for(int i=0; i < count; i++){
+				board.makeMove(moves[i]);
+				leaves[i] = count(board, depth-1, buffers, 0);
+				board.undoMove(moves[i]);
+			}
+		}else{
+			RootMove[] tasks = new RootMove[count];
+			for(int i=0; i < count; i++){
+				tasks[i] = new RootMove(new Board(board), moves[i], depth-1);
+				pool.execute(tasks[i]);
+			}
+			for(int i=0; i < count; i++){
+				leaves[i] = tasks[i].join();
+			}
+		}
+		
+		Map<HasamiMove, Long> result = new LinkedHashMap<HasamiMove, Long>();
+		for(int i=0; i < count; i++){
+			result.put(board.toHasamiMove(moves[i]), leaves[i]);
+		}
+		return result;
+	}
+	
+	public static long parallelPerft(Board board, int depth, ForkJoinPool pool){
+		if(depth < 2)
+			return perft(board, depth);
+		long total = 0;
+		for(long leaves : divide(board, depth, pool).values()){
+			total += leaves;
+		}
+		return total;
+	}
+	
+	private static long count(Board board, int depth, int[][] buffers, int ply){
+		if(depth == 0)
+			return 1;
+		if(board.hasWinner())
+			return 0;
+		int[] moves = buffers[ply];
+		int count = board.generateMoves(moves);
+		if(depth == 1)
+			return count;
+		
+		long leaves = 0;
+		for(int i=0; i < count; i++){
+			board.makeMove(moves[i]);
+			leaves += count(board, depth-1, buffers, ply+1);
+			board.undoMove(moves[i]);
+		}
+		return leaves;
+	}
+	
+	private static class RootMove extends RecursiveTask<Long> {
+		
+		private static final long serialVersionUID = 1L;
+		private final Board board;
+		private final int move;
+		private final int depth;
+		
+		RootMove(Board board, int move, int depth){
+			this.board = board;
+			this.move = move;
+			this.depth = depth;
+		}
+		
+		@Override
+		protected Long compute() {
+			board.makeMove(move);
+			return count(board, depth, new int[Math.max(depth, 1)][board.getMaxMoves()], 0);
+		}
+	}//end of class RootMove.
+	
+	/**
+	 * Usage: Perft depth [-divide] [-threads n] [-size n] [moves...]
+	 * The moves, e.g. a1-a5 e9-e6, are played from the start position first.
+	 */
+	public static void main(String[] args) {
+		if(args.length == 0){
+			System.out.println("Usage: Perft depth [-divide] [-threads n] [-size n] [moves...]");
+			return;
+		}
+		int depth = Integer.parseInt(args[0]);
+		boolean divide = false;
+		int threads = 1;
+		int size = 9;
+		int first = 1;
+		for(; first < args.length && args[first].startsWith("-"); first++){
+			if(args[first].equals("-divide"))
+				divide = true;
+			else if(args[first].equals("-threads"))
+				threads = Integer.parseInt(args[++first]);
+			else if(args[first].equals("-size"))
+				size = Integer.parseInt(args[++first]);
+			else
+				throw new IllegalArgumentException("Unknown option: "+args[first]);
+		}
+		Board board = new Board(size);
+		for(int i=first; i < args.length; i++){
+			HasamiMove move = HasamiMove.parse(args[i], size);
+			if(move == null || !board.getMoves().contains(move))
+				throw new IllegalArgumentException("Invalid move: "+args[i]);
+			board.makeMove(move);
+		}
+		ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+		
+		if(divide){
+			long total = 0;
+			for(Map.Entry<HasamiMove, Long> entry : divide(board, depth, pool).entrySet()){
+				System.out.println(entry.getKey().toString().trim()+": "+entry.getValue());
+				total += entry.getValue();
+			}
+			System.out.println("Total: "+total);
+		}else{
+			for(int d=1; d <= depth; d++){
+				long start = System.nanoTime();
+				long leaves = pool == null ? perft(board, d) : parallelPerft(board, d, pool);
+				long elapsed = Math.max(1, System.nanoTime() - start);
+				System.out.println("perft("+d+") = "+leaves+"  "+elapsed/1000000+" ms  "+leaves*1000000000L/elapsed+" leaves/s");
+			}
+		}
+		if(pool != null)
+			pool.shutdown();
+	}
+
+}//end class.
@@ -0,0 +1,165 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import hasami.Board.Color;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary positions and moves. A position is one byte holding the
+ * board size and the side to move (size<<1 | 1 when black moves), then the
+ * white and the black squares as bit masks of ceil(size*size/8) bytes each,
+ * square lin*size+col being bit sq%8 of byte sq/8: 23 bytes on 9x9. A move is
+ * a short with the from and to squares of a packed move; the captures follow
+ * from the position.
+ */
+public final class PositionCodec {
+
+	private PositionCodec(){
+	}
+	
+	public static int encodedLength(int boardSize){
+		return 1 + 2*maskBytes(boardSize);
+	}
+	
+	private static int maskBytes(int boardSize){
+		return (boardSize*boardSize + 7) >>> 3;
+	}
+	
+	/**
+	 * Writes the position of board at the buffer's position and advances it.
+	 */
+	public static void encode(Board board, ByteBuffer out){
+		int size = board.getBoardSize();
+		out.put((byte) (size << 1 | (board.currentPlayer() == Color.BLACK ? 1 : 0)));
+		putMask(board.bitboard(Color.WHITE), maskBytes(size), out);
+		putMask(board.bitboard(Color.BLACK), maskBytes(size), out);
+	}
+	
+	private static void putMask(long[] mask, int bytes, ByteBuffer out){
+		for(int i=0; i < bytes; i++){
+			out.put((byte) (mask[i >>> 3] >>> ((i & 7) << 3)));
+		}
+	}
+	
+	/**
+	 * Reads a position written by encode() into a new Board.
+	 */
+	public static Board decode(ByteBuffer in){
+		Board board = new Board((in.get(in.position()) & 0xFF) >>> 1);
+		decode(in, board);
+		return board;
+	}
+	
+	/**
+	 * Reads a position written by encode() into board, which must have its size.
+	 * A record that is not a valid position, e.g. with more pieces on a side
+	 * than it starts with, throws IllegalArgumentException.
+	 */
+	public static void decode(ByteBuffer in, Board board){
+		int first = in.get() & 0xFF;
+		int size = first >>> 1;
+		if(size != board.getBoardSize())
+			throw new IllegalArgumentException("Position of size "+size+" for a board of size "+board.getBoardSize());
+		int[] white = getSquares(size, in);
+		int[] black = getSquares(size, in);
+		board.setPosition(white, black, (first & 1) == 1 ? Color.BLACK : Color.WHITE);
+	}
+	
+	/**
+	 * Writes the position of board to out.
+	 */
+	public static void write(Board board, OutputStream out) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(encodedLength(board.getBoardSize()));
+		encode(board, buffer);
+		out.write(buffer.array());
+	}
+	
+	/**
+	 * Reads the next position written by write(), or returns null at the end of in.
+	 */
+	public static Board read(InputStream in) throws IOException {
+		int first = in.read();
+		if(first < 0)
+			return null;
+		byte[] bytes = new byte[encodedLength(first >>> 1)];
+		bytes[0] = (byte) first;
+		for(int read=1; read < bytes.length; ){
+			int n = in.read(bytes, read, bytes.length - read);
+			if(n < 0)
+				throw new EOFException("Truncated position");
+			read += n;
+		}
+		return decode(ByteBuffer.wrap(bytes));
+	}
+	
+	private static int[] getSquares(int size, ByteBuffer in){
+		int[] squares = new int[size];
+		int count = 0;
+		for(int i=0; i < maskBytes(size); i++){
+			for(int bits=in.get() & 0xFF; bits != 0; bits &= bits-1){
+				int sq = (i << 3) + Integer.numberOfTrailingZeros(bits);
+				if(count == size || sq >= size*size)
+					throw new IllegalArgumentException("Corrupt position: square "+sq+", piece "+(count+1)+" of a side");
+				squares[count++] = sq;
+			}
+		}
+		int[] result = new int[count];
+		System.arraycopy(squares, 0, result, 0, count);
+		return result;
+	}
+	
+	/**
+	 * The from and to squares of a packed move.
+	 */
+	public static short encodeMove(int move){
+		return (short) Board.packMove(Board.moveFrom(move), Board.moveTo(move), 0);
+	}
+	
+	/**
+	 * The packed move of an encoded one, with the captures it makes on board.
+	 * A move that is not legal on board throws IllegalArgumentException; moves
+	 * after a repetition are legal, as a game may be played on past one.
+	 */
+	public static int decodeMove(Board board, short move){
+		return decodeMove(board, move, new int[board.getMaxMoves()]);
+	}
+	
+	/**
+	 * Like decodeMove(board, move), generating the legal moves into moves,
+	 * which must hold board.getMaxMoves() entries, so replaying allocates nothing.
+	 */
+	public static int decodeMove(Board board, short move, int[] moves){
+		int from = Board.moveFrom(move);
+		int to = Board.moveTo(move);
+		int count = board.hasWinner() ? 0 : board.generateMoves(moves);
+		for(int i=0; i < count; i++){
+			if(Board.moveFrom(moves[i]) == from && Board.moveTo(moves[i]) == to)
+				return moves[i];
+		}
+		throw new IllegalArgumentException("Corrupt move: "+from+"-"+to);
+	}
+	
+}//end class.
@@ -0,0 +1,40 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+/**
+ * Receives progress reports from an Engine search. Calls come from the
+ * searching thread and should return quickly.
+ */
+public interface SearchListener {
+
+	/**
+	 * An iteration of the iterative deepening completed.
+	 */
+	void iterationCompleted(SearchResult result);
+	
+	/**
+	 * A root move was searched at depth; moveNumber counts from 1. The
+	 * score is exact only when the move became the best one so far,
+	 * otherwise it is an upper bound.
+	 */
+	void rootMoveSearched(int depth, int moveNumber, HasamiMove move, double score);
+	
+}//end interface.
@@ -0,0 +1,126 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import java.lang.reflect.Field;
+
+/**
+ * Tunable settings of an Engine. Fields may be changed freely before the
+ * Engine is created; the Engine keeps its own copy.
+ */
+public class SearchOptions {
+
+	/** Transposition table budget in megabytes. */
+	public int tableMegabytes = 16;
+	
+	/** Search threads; the helpers search copies of the board and share the table. */
+	public int threads = 1;
+	
+	/** Principal variation search: zero-window scouts for all but the first move. */
+	public boolean principalVariation = true;
+	
+	/** Half width of the root window around the previous iteration's score; 0 disables it. */
+	public double aspirationWindow = 0.25;
+	
+	/** Factor applied to the window each time the root score falls outside it. */
+	public double aspirationWidening = 4;
+	
+	/** Keep searching capture sequences past the depth limit, up to quiescencePlies deep. */
+	public boolean quiescence = true;
+	public int quiescencePlies = 8;
+	
+	/**
+	 * Null-move pruning: skip nodes where passing still fails high in a
+	 * search nullMoveReduction plies shallower. When the side to move has
+	 * nullMoveVerifyPieces pieces or fewer the cutoff is verified first.
+	 */
+	public boolean nullMove = true;
+	public int nullMoveReduction = 2;
+	public int nullMoveVerifyPieces = 4;
+	
+	/** Late move reductions: quiet moves from the lateMoveIndex-th on are searched shallower first. */
+	public boolean lateMoveReductions = true;
+	public int lateMoveIndex = 4;
+	
+	/**
+	 * Sets the option called name from text, e.g. set("threads", "4").
+	 */
+	public void set(String name, String value){
+		try {
+			Field field = SearchOptions.class.getField(name);
+			Class<?> type = field.getType();
+			if(type == int.class)
+				field.setInt(this, Integer.parseInt(value));
+			else if(type == double.class)
+				field.setDouble(this, Double.parseDouble(value));
+			else if(type == boolean.class)
+				field.setBoolean(this, Boolean.parseBoolean(value));
+			else
+				throw new IllegalArgumentException("Option cannot be set from text: "+name);
+		} catch (NoSuchFieldException e) {
+			throw new IllegalArgumentException("Unknown option: "+name);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Applies "name=value" settings, as given on command lines.
+	 */
+	public void setAll(String... settings){
+		for(String setting : settings){
+			int equals = setting.indexOf('=');
+			if(equals < 0)
+				throw new IllegalArgumentException("Expected name=value: "+setting);
+			set(setting.substring(0, equals), setting.substring(equals+1));
+		}
+	}
+	
+	@Override
+	public String toString(){
+		StringBuilder text = new StringBuilder();
+		for(Field field : SearchOptions.class.getFields()){
+			try {
+				text.append(text.length() == 0 ? "" : " ").append(field.getName()).append('=').append(field.get(this));
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return text.toString();
+	}
+	
+	public SearchOptions copy(){
+		SearchOptions copy = new SearchOptions();
+		copy.tableMegabytes = tableMegabytes;
+		copy.threads = threads;
+		copy.principalVariation = principalVariation;
+		copy.aspirationWindow = aspirationWindow;
+		copy.aspirationWidening = aspirationWidening;
+		copy.quiescence = quiescence;
+		copy.quiescencePlies = quiescencePlies;
+		copy.nullMove = nullMove;
+		copy.nullMoveReduction = nullMoveReduction;
+		copy.nullMoveVerifyPieces = nullMoveVerifyPieces;
+		copy.lateMoveReductions = lateMoveReductions;
+		copy.lateMoveIndex = lateMoveIndex;
+		return copy;
+	}
+	
+}//end class.
@@ -0,0 +1,81 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+/**
+ * Outcome and statistics of one Engine search, or of one completed
+ * iteration of it. Node and cutoff counts include every search thread.
+ */
+public class SearchResult {
+
+	/** Best move found, with its score in val; null when there is no legal move. */
+	public HasamiMove bestMove;
+	public double score;
+	/** Depth of the deepest completed iteration. */
+	public int depth;
+	public long nodes;
+	public long elapsedMillis;
+	/** Beta cutoffs, and how many of them were produced by the first move tried. */
+	public long cutoffs;
+	public long firstMoveCutoffs;
+	/** Transposition table lookups, and how many found an entry. */
+	public long tableProbes;
+	public long tableHits;
+	/** Positions scored by the endgame tablebases. */
+	public long tablebaseHits;
+	/** Expected line of play from the searched position, best move first. */
+	public HasamiMove[] principalVariation = new HasamiMove[0];
+	/** True when the search ended early through stop() or the time budget. */
+	public boolean stopped;
+	/** True when the search continued a ponder search of the same position. */
+	public boolean ponderHit;
+	/** True when the move came from the opening book without a search. */
+	public boolean fromBook;
+	
+	public long getNodesPerSecond(){
+		return elapsedMillis == 0 ? nodes*1000 : nodes*1000/elapsedMillis;
+	}
+	
+	public double getCutoffRate(){
+		return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+	}
+	
+	public double getTableHitRate(){
+		return tableProbes == 0 ? 0 : (double) tableHits / tableProbes;
+	}
+	
+	@Override
+	public String toString(){
+		StringBuilder text = new StringBuilder();
+		text.append("depth ").append(depth)
+			.append(" score ").append(String.format("%.3f", score))
+			.append(" nodes ").append(nodes)
+			.append(" nps ").append(getNodesPerSecond())
+			.append(" time ").append(elapsedMillis)
+			.append(" cutoffs ").append(String.format("%.3f", getCutoffRate()))
+			.append(" tthits ").append(String.format("%.3f", getTableHitRate()))
+			.append(" pv");
+		for(HasamiMove move : principalVariation){
+			text.append(' ').append(move.toString().trim());
+		}
+		return text.toString();
+	}
+	
+}//end class.
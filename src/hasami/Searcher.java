@@ -0,0 +1,410 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import hasami.Board.Color;
+
+/**
+ * The alpha-beta search of one thread. Every Searcher owns its board and
+ * move buffers; only the transposition table is shared between them.
+ */
+class Searcher {
+
+	static final int MAX_PLY = 64;
+	static final double INFINITY=1000;
+	static final double WIN_SCORE=50;
+	//-- Score of a lost position at the root, as Board.evaluate() gives it. --//
+	private static final double LOSS = -100;
+	private static final double DRAW = 0;
+	//-- Width of the zero windows of principal variation search. --//
+	private static final double NULL_WINDOW = 1e-4;
+	private static final int CHECK_INTERVAL = 1023;
+	
+	private final TranspositionTable table;
+	private final SearchOptions options;
+	//-- The engine to report progress to; null for helpers, which only fill the table. --//
+	private final Engine owner;
+	private final boolean helper;
+	
+	//-- Per-ply move and ordering score buffers, reused by every search. --//
+	private int[][] moveBuffers;
+	private int[][] scoreBuffers;
+	private final MoveOrdering ordering;
+	private Tablebase tablebase;
+	private Board board;
+	private int rootMove;
+	private int depthLimit;
+	
+	//-- Abort control: the deadline is checked every CHECK_INTERVAL+1 nodes. --//
+	private volatile boolean stopped;
+	private volatile long deadline;
+	//-- Lowered by limit() while the search runs. --//
+	private volatile int maxDepth;
+	private long nodes;
+	private long tableProbes;
+	private long tableHits;
+	private long tablebaseHits;
+	
+	//-- Result of the deepest completed iteration. --//
+	private int bestMove;
+	private double bestScore;
+	private int completedDepth;
+	
+	/**
+	 * @param owner the engine of the main searcher; helpers, given null,
+	 * only fill the table and may abort at any depth.
+	 */
+	Searcher(TranspositionTable table, SearchOptions options, Engine owner){
+		this.table = table;
+		this.options = options;
+		this.owner = owner;
+		this.helper = owner == null;
+		moveBuffers = new int[MAX_PLY][];
+		scoreBuffers = new int[MAX_PLY][];
+		ordering = new MoveOrdering(MAX_PLY);
+	}
+	
+	/**
+	 * Prepares a new search of board; stop() may be called from then on.
+	 */
+	void reset(Board board, long deadline){
+		this.board = board;
+		this.deadline = deadline;
+		this.maxDepth = MAX_PLY-1;
+		ensureBuffers(board);
+		ordering.newSearch();
+		stopped = false;
+		nodes = 0;
+		tableProbes = 0;
+		tableHits = 0;
+		tablebaseHits = 0;
+		bestMove = Board.NO_MOVE;
+		bestScore = -INFINITY;
+		completedDepth = 0;
+	}
+	
+	void setTablebase(Tablebase tablebase){
+		this.tablebase = tablebase;
+	}
+	
+	void stop(){
+		stopped = true;
+	}
+	
+	/**
+	 * Ends the running search at maxDepth or deadline, whichever comes first.
+	 * An iteration already deeper than maxDepth is abandoned.
+	 */
+	void limit(int maxDepth, long deadline){
+		this.maxDepth = maxDepth;
+		this.deadline = deadline;
+	}
+	
+	/**
+	 * Deepens iteratively from firstDepth to maxDepth, or until stopped.
+	 */
+	void iterativeDeepening(Color player, int firstDepth, int maxDepth){
+		for(int depth=firstDepth; depth <= maxDepth && depth <= this.maxDepth; depth++){
+			depthLimit = depth;
+			rootMove = bestMove;
+			double score = aspirationSearch(player, depth > firstDepth);
+			if(aborted())
+				break;
+			bestMove = rootMove;
+			bestScore = score;
+			completedDepth = depth;
+			if(owner != null)
+				owner.iterationCompleted(this);
+			//A forced result will not change with more depth.
+			if(stopped || Math.abs(score) > WIN_SCORE)
+				break;
+		}
+	}
+	
+	/**
+	 * Searches the root with a window around the previous score, widening
+	 * the side the score falls out of until it lands inside.
+	 */
+	private double aspirationSearch(Color player, boolean hasPrevious){
+		double window = options.aspirationWindow;
+		if(!hasPrevious || window <= 0 || Math.abs(bestScore) > WIN_SCORE)
+			return abNegamax(player, 0, depthLimit, -INFINITY, INFINITY, false);
+		double alpha = bestScore - window;
+		double beta = bestScore + window;
+		while(true){
+			double score = abNegamax(player, 0, depthLimit, alpha, beta, false);
+			if(aborted())
+				return score;
+			window *= options.aspirationWidening;
+			if(score <= alpha && alpha > -INFINITY)
+				alpha = window > WIN_SCORE ? -INFINITY : bestScore - window;
+			else if(score >= beta && beta < INFINITY)
+				beta = window > WIN_SCORE ? INFINITY : bestScore + window;
+			else
+				return score;
+		}
+	}
+	
+	int getBestMove(){
+		return bestMove;
+	}
+	
+	double getBestScore(){
+		return bestScore;
+	}
+	
+	int getCompletedDepth(){
+		return completedDepth;
+	}
+	
+	long getNodes(){
+		return nodes;
+	}
+	
+	long getTableProbes(){
+		return tableProbes;
+	}
+	
+	long getTableHits(){
+		return tableHits;
+	}
+	
+	long getTablebaseHits(){
+		return tablebaseHits;
+	}
+	
+	boolean isStopped(){
+		return stopped;
+	}
+	
+	MoveOrdering getOrdering(){
+		return ordering;
+	}
+
+	/**
+	 * @param ply distance from the root.
+	 * @param depth plies left before the quiescence search.
+	 * @param allowNull false right after a null move, so two never follow each other.
+	 */
+	private double abNegamax(Color player, int ply, int depth, double alpha, double beta, boolean allowNull){
+		if((++nodes & CHECK_INTERVAL) == 0 && (System.nanoTime() > deadline || depthLimit > maxDepth))
+			stopped = true;
+		//A repetition is scored as a draw at once: the cycle can be played forever.
+		if(ply > 0 && board.isRepetition())
+			return DRAW;
+		if(board.isGameOver()){
+			//The root too: a position drawn by repetition is not won by either side.
+			return board.hasWinner() ? board.evaluate(player, ply) : DRAW;
+		}
+		if(tablebase != null && ply > 0){
+			int value = tablebase.probe(board);
+			if(value != Tablebase.NOT_FOUND)
+				return tablebaseScore(value, ply);
+		}
+		if(depth <= 0 || ply >= MAX_PLY-1){
+			if(options.quiescence)
+				return quiesce(player, ply, alpha, beta, ply + options.quiescencePlies);
+			return board.evaluate(player, ply);
+		}
+		if(aborted())
+			return 0;
+		long key = board.getHash();
+		long entry = table.probe(key);
+		int hashMove = Board.NO_MOVE;
+		tableProbes++;
+		if(entry != 0){
+			tableHits++;
+			hashMove = TranspositionTable.move(entry);
+			if(ply > 0 && TranspositionTable.depth(entry) >= depth){
+				double score = fromTable(TranspositionTable.score(entry), ply);
+				int bound = TranspositionTable.bound(entry);
+				if(bound == TranspositionTable.EXACT
+						|| (bound == TranspositionTable.LOWER && score >= beta)
+						|| (bound == TranspositionTable.UPPER && score <= alpha))
+					return score;
+			}
+		}
+		
+		//Null move: if passing still fails high, a real move will too.
+		if(allowNull && options.nullMove && ply > 0 && depth > options.nullMoveReduction && Math.abs(beta) < WIN_SCORE){
+			board.makeNullMove();
+			double score = -abNegamax(player, ply+1, depth-1-options.nullMoveReduction, -beta, -beta+NULL_WINDOW, false);
+			board.undoNullMove();
+			if(aborted())
+				return 0;
+			//With few pieces passing may be the best move, so check with a reduced real search.
+			if(score >= beta && board.pieceCount(board.currentPlayer()) <= options.nullMoveVerifyPieces)
+				score = abNegamax(player, ply, depth-options.nullMoveReduction, beta-NULL_WINDOW, beta, false);
+			if(score >= beta && !aborted())
+				return score > WIN_SCORE ? beta : score;
+		}
+		
+		int[] moves = moveBuffers[ply];
+		int[] scores = scoreBuffers[ply];
+		int count = board.generateMoves(moves);
+		//A side that cannot move has lost, as in the tablebases.
+		if(count == 0)
+			return LOSS + ply;
+		//The root starts from the previous iteration's best move.
+		if(ply == 0 && rootMove != Board.NO_MOVE)
+			hashMove = TranspositionTable.move(rootMove);
+		ordering.score(moves, scores, count, ply, hashMove);
+		double bestScore = -INFINITY;
+		int bestMove = Board.NO_MOVE;
+		
+		for(int i=0; i < count; i++){
+			int move = ordering.next(moves, scores, i, count);
+			double bound = Math.max(alpha, bestScore);
+			int reduction = lateMoveReduction(move, scores[i], i, depth);
+			board.makeMove(move);
+			double currentScore = INFINITY;
+			if(reduction > 0){
+				//Late quiet move: a reduced zero-window search must beat the bound first.
+				currentScore = -abNegamax(player, ply+1, depth-1-reduction, -bound-NULL_WINDOW, -bound, true);
+			}
+			if(currentScore > bound && !aborted()){
+				if(i == 0 || !options.principalVariation){
+					currentScore = -abNegamax(player, ply+1, depth-1, -beta, -bound, true);
+				}else{
+					//Scout with a zero window, search again only if the move may be better.
+					currentScore = -abNegamax(player, ply+1, depth-1, -bound-NULL_WINDOW, -bound, true);
+					if(currentScore > bound && currentScore < beta && !aborted())
+						currentScore = -abNegamax(player, ply+1, depth-1, -beta, -bound, true);
+				}
+			}
+			board.undoMove(move);
+			if(aborted())
+				return 0;
+			if(ply == 0 && owner != null)
+				owner.rootMoveSearched(depth, i+1, move, currentScore);
+			
+			if(currentScore > bestScore){
+				bestScore = currentScore;
+				bestMove = move;
+				if(ply == 0)
+					rootMove = move;
+				if(bestScore >= beta){
+					ordering.cutoff(move, ply, depth, i);
+					break;
+				}
+			}
+		}//end of for looping.
+		
+		int bound = bestScore >= beta ? TranspositionTable.LOWER
+				  : bestScore > alpha ? TranspositionTable.EXACT
+				  : TranspositionTable.UPPER;
+		table.store(key, depth, bound, toTable(bestScore, ply), bestMove);
+		return bestScore;
+	}
+	
+	/**
+	 * Capture-only search past the depth limit. The side to move may stand
+	 * pat on the static evaluation instead of capturing.
+	 */
+	private double quiesce(Color player, int ply, double alpha, double beta, int lastPly){
+		if(tablebase != null){
+			int value = tablebase.probe(board);
+			if(value != Tablebase.NOT_FOUND)
+				return tablebaseScore(value, ply);
+		}
+		double standPat = board.evaluate(player, ply);
+		if(board.isGameOver() || standPat >= beta || ply >= lastPly || ply >= MAX_PLY-1)
+			return standPat;
+		
+		int[] moves = moveBuffers[ply];
+		int[] scores = scoreBuffers[ply];
+		int count = board.generateCaptures(moves);
+		ordering.score(moves, scores, count, ply, Board.NO_MOVE);
+		double bestScore = standPat;
+		
+		for(int i=0; i < count; i++){
+			if((++nodes & CHECK_INTERVAL) == 0 && System.nanoTime() > deadline)
+				stopped = true;
+			int move = ordering.next(moves, scores, i, count);
+			board.makeMove(move);
+			double currentScore = -quiesce(player, ply+1, -beta, -Math.max(alpha, bestScore), lastPly);
+			board.undoMove(move);
+			if(aborted())
+				return 0;
+			if(currentScore > bestScore){
+				bestScore = currentScore;
+				if(bestScore >= beta)
+					break;
+			}
+		}
+		return bestScore;
+	}
+	
+	/**
+	 * Plies to take off the search of the index-th move: late quiet moves
+	 * are reduced by one ply, very late ones by two.
+	 */
+	private int lateMoveReduction(int move, int score, int index, int depth){
+		if(!options.lateMoveReductions || depth < 3 || index < options.lateMoveIndex
+				|| Board.moveCaptures(move) > 0 || !MoveOrdering.isQuiet(score))
+			return 0;
+		return index >= 4*options.lateMoveIndex ? 2 : 1;
+	}
+	
+	/**
+	 * Exact score of a tablebase position: a draw, or a win or loss at the
+	 * ply where the game ends, scored as evaluate() scores it then.
+	 */
+	private double tablebaseScore(int value, int ply) {
+		tablebaseHits++;
+		if(value == Tablebase.DRAW)
+			return 0;
+		int end = ply + Tablebase.plies(value);
+		return Tablebase.isWin(value) ? -LOSS - end : LOSS + end;
+	}
+	
+	//-- Only the main searcher's first iteration may not be abandoned. --//
+	private boolean aborted() {
+		return stopped && (helper || depthLimit > 1);
+	}
+	
+	//-- Win/loss scores depend on the ply; the table keeps them relative to the node. --//
+	private static double toTable(double score, int ply) {
+		if(score > WIN_SCORE)
+			return score + ply;
+		if(score < -WIN_SCORE)
+			return score - ply;
+		return score;
+	}
+	
+	private static double fromTable(double score, int ply) {
+		if(score > WIN_SCORE)
+			return score - ply;
+		if(score < -WIN_SCORE)
+			return score + ply;
+		return score;
+	}
+	
+	private void ensureBuffers(Board board) {
+		int size = board.getMaxMoves();
+		if(moveBuffers[0] != null && moveBuffers[0].length >= size)
+			return;
+		for(int ply=0; ply < MAX_PLY; ply++){
+			moveBuffers[ply] = new int[size];
+			scoreBuffers[ply] = new int[size];
+		}
+	}
+	
+}//end class.
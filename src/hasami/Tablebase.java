@@ -0,0 +1,214 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import hasami.Board.Color;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Endgame tablebases written by TablebaseGenerator, memory-mapped. A table
+ * holds every position of a board size with a pieces of one colour and b of
+ * the other, a <= b, both sides to move; the side with a pieces is indexed
+ * as white, so colour-swapped material shares the table. Each position is one
+ * byte: DRAW, or plies+1 where plies is the distance to the end of the game
+ * with best play, odd plies meaning the side to move wins.
+ */
+public class Tablebase {
+
+	public static final int NOT_FOUND = -1;
+	public static final int DRAW = 0;
+	
+	static final int MAGIC = 0x48535442; //"HSTB"
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 32;
+	//-- Longest distance a byte holds; longer wins are stored as draws. --//
+	static final int MAX_PLIES = 254;
+	static final int MAX_PIECES = 4;
+	
+	//-- BINOMIAL[n][k] = n choose k, for the combinatorial position index. --//
+	private static final long[][] BINOMIAL = new long[Board.MAX_SIZE*Board.MAX_SIZE+1][MAX_PIECES+1];
+	static {
+		for(int n=0; n < BINOMIAL.length; n++){
+			BINOMIAL[n][0] = 1;
+			for(int k=1; k <= MAX_PIECES && k <= n; k++){
+				BINOMIAL[n][k] = BINOMIAL[n-1][k-1] + (k < n ? BINOMIAL[n-1][k] : 0);
+			}
+		}
+	}
+	
+	//-- tables[size][a][b]; null where no file was found. --//
+	private final ByteBuffer[][][] tables = new ByteBuffer[Board.MAX_SIZE+1][MAX_PIECES+1][MAX_PIECES+1];
+	private int maxPieces;
+	
+	/**
+	 * Maps every table file (*.htb) of directory.
+	 */
+	public Tablebase(File directory) throws IOException {
+		File[] files = directory.listFiles();
+		if(files == null)
+			throw new IOException("Not a directory: "+directory);
+		for(File file : files){
+			if(file.getName().endsWith(".htb"))
+				map(file);
+		}
+	}
+	
+	private void map(File file) throws IOException {
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			MappedByteBuffer map = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+			if(map.capacity() < HEADER_BYTES || map.getInt(0) != MAGIC || map.getInt(4) != VERSION)
+				throw new IOException("Not a tablebase: "+file);
+			int size = map.getInt(8);
+			int a = map.getInt(12);
+			int b = map.getInt(16);
+			if(size < 2 || size > Board.MAX_SIZE || a < 2 || a > b || b > MAX_PIECES
+					|| map.getLong(24) != entries(size, a, b) || map.capacity() != HEADER_BYTES + map.getLong(24))
+				throw new IOException("Corrupt tablebase: "+file);
+			map.position(HEADER_BYTES);
+			tables[size][a][b] = map.slice();
+			maxPieces = Math.max(maxPieces, a+b);
+		} finally {
+			input.close();
+		}
+	}
+	
+	/**
+	 * Most pieces on the board, both sides together, of any table.
+	 */
+	public int getMaxPieces(){
+		return maxPieces;
+	}
+	
+	public boolean contains(int size, int a, int b){
+		return a <= b && b <= MAX_PIECES && tables[size][a][b] != null;
+	}
+	
+	/**
+	 * The stored value of the position, or NOT_FOUND when no table covers it.
+	 */
+	public int probe(Board board){
+		int white = board.pieceCount(Color.WHITE);
+		int black = board.pieceCount(Color.BLACK);
+		if(white + black > maxPieces || white < 2 || black < 2)
+			return NOT_FOUND;
+		Color first = white <= black ? Color.WHITE : Color.BLACK;
+		ByteBuffer table = tables[board.getBoardSize()][Math.min(white, black)][Math.max(white, black)];
+		if(table == null)
+			return NOT_FOUND;
+		Color second = board.opponentColor(first);
+		int side = board.currentPlayer() == first ? 0 : 1;
+		return table.get((int) index(board.bitboard(first), board.bitboard(second), side, board.getBoardSize(), Math.min(white, black), Math.max(white, black))) & 0xFF;
+	}
+	
+	public static boolean isWin(int value){
+		return value > DRAW && (plies(value) & 1) == 1;
+	}
+	
+	public static boolean isLoss(int value){
+		return value > DRAW && (plies(value) & 1) == 0;
+	}
+	
+	/**
+	 * Plies to the end of the game of a won or lost position.
+	 */
+	public static int plies(int value){
+		return value - 1;
+	}
+	
+	/**
+	 * Positions of a table: both sides to move, a pieces on any squares and
+	 * b pieces on the remaining ones.
+	 */
+	static long entries(int size, int a, int b){
+		int squares = size*size;
+		return 2*BINOMIAL[squares][a]*BINOMIAL[squares-a][b];
+	}
+	
+	/**
+	 * Index of the position with a pieces on first, b pieces on second and
+	 * side (0 for the first pieces, 1 for the second) to move. Each set of
+	 * squares is ranked in the combinatorial number system; the second set
+	 * skips the squares of the first.
+	 */
+	static long index(long[] first, long[] second, int side, int size, int a, int b){
+		int squares = size*size;
+		long firstRank = 0;
+		int i = 0;
+		for(int w=0; w < first.length; w++){
+			for(long bits=first[w]; bits != 0; bits &= bits-1){
+				firstRank += BINOMIAL[(w<<6) + Long.numberOfTrailingZeros(bits)][++i];
+			}
+		}
+		long secondRank = 0;
+		i = 0;
+		for(int w=0; w < second.length; w++){
+			for(long bits=second[w]; bits != 0; bits &= bits-1){
+				long below = (bits & -bits) - 1;
+				int skipped = Long.bitCount(first[w] & below) + (w == 1 ? Long.bitCount(first[0]) : 0);
+				secondRank += BINOMIAL[(w<<6) + Long.numberOfTrailingZeros(bits) - skipped][++i];
+			}
+		}
+		return (side*BINOMIAL[squares][a] + firstRank)*BINOMIAL[squares-a][b] + secondRank;
+	}
+	
+	/**
+	 * Inverse of index(): writes the squares of both sets, ascending, and
+	 * returns the side to move.
+	 */
+	static int unindex(long index, int size, int[] first, int[] second){
+		int squares = size*size;
+		int a = first.length;
+		int b = second.length;
+		long secondRank = index % BINOMIAL[squares-a][b];
+		index /= BINOMIAL[squares-a][b];
+		long firstRank = index % BINOMIAL[squares][a];
+		int side = (int) (index / BINOMIAL[squares][a]);
+		unrank(firstRank, first, squares);
+		unrank(secondRank, second, squares-a);
+		//Spread the second set back over the squares the first one left free.
+		for(int i=0; i < b; i++){
+			for(int sq : first){
+				if(sq <= second[i])
+					second[i]++;
+			}
+		}
+		return side;
+	}
+	
+	private static void unrank(long rank, int[] set, int squares){
+		int sq = squares-1;
+		for(int k=set.length; k > 0; k--){
+			while(BINOMIAL[sq][k] > rank){
+				sq--;
+			}
+			set[k-1] = sq;
+			rank -= BINOMIAL[sq][k];
+			sq--;
+		}
+	}
+	
+}//end class.
@@ -0,0 +1,341 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import hasami.Board.Color;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retrograde generation of the Tablebase files of one board size, smallest
+ * material first so that captures always lead to finished tables.
+ * <p>
+ * A position is decided at level d when it is won or lost in d plies. Level 0
+ * holds the positions without moves. Level d first marks the predecessors
+ * of the positions decided at d-1, found by moving back the piece of the side
+ * that just moved, then evaluates the marked positions: a move to a position
+ * lost in fewer than d plies wins, and only moves to positions won in fewer
+ * than d plies lose. Captures lead to other tables, whose distances are known
+ * from the start; a position is also marked for the level at which its next
+ * capture result becomes relevant. Both passes split the table over threads,
+ * each with its own Board. Positions still open after MAX_PLIES are draws.
+ */
+public class TablebaseGenerator {
+
+	private static final int CHUNK = 1 << 14;
+	
+	private final int size;
+	private final File directory;
+	private final int threads;
+	//-- Finished tables, reopened after each one is written. --//
+	private Tablebase finished;
+	
+	//-- The table being generated: a value and a level mark per position. --//
+	private int a;
+	private int b;
+	private byte[] values;
+	private byte[] marks;
+	
+	public TablebaseGenerator(int size, File directory, int threads) throws IOException {
+		this.size = size;
+		this.directory = directory;
+		this.threads = threads;
+		finished = new Tablebase(directory);
+	}
+	
+	/**
+	 * Generates every table with at most maxPieces pieces, skipping those
+	 * already in the directory.
+	 */
+	public void generateAll(int maxPieces) throws IOException, InterruptedException {
+		for(int total=4; total <= maxPieces; total++){
+			for(int a=2; a <= total/2; a++){
+				if(!finished.contains(size, a, total-a))
+					generate(a, total-a);
+			}
+		}
+	}
+	
+	/**
+	 * Generates and writes the table of a against b pieces; the tables its
+	 * captures lead to must be finished.
+	 */
+	public void generate(int a, int b) throws IOException, InterruptedException {
+		long entries = Tablebase.entries(size, a, b);
+		if(a < 2 || a > b || b > Tablebase.MAX_PIECES || entries > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Unsupported table "+a+"v"+b+" on "+size+"x"+size);
+		long start = System.nanoTime();
+		this.a = a;
+		this.b = b;
+		values = new byte[(int) entries];
+		marks = new byte[(int) entries];
+		
+		long decided = runPass(0);
+		for(int level=1; level <= Tablebase.MAX_PLIES; level++){
+			runPass(-level);
+			long count = runPass(level);
+			decided += count;
+			if(count == 0 && !marked(level))
+				break;
+		}
+		File file = new File(directory, "hasami-"+size+"-"+a+"v"+b+".htb");
+		write(file);
+		values = null;
+		marks = null;
+		finished = new Tablebase(directory);
+		System.out.println(file.getName()+": "+entries+" positions, "+decided+" decided, "
+				+(System.nanoTime()-start)/1000000000+" s");
+	}
+	
+	/**
+	 * True if some open position is marked for a level after level.
+	 */
+	private boolean marked(int level){
+		for(byte mark : marks){
+			if((mark & 0xFF) > level)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Runs one pass over the table on all threads: a positive or zero level
+	 * evaluates the positions marked for it, a negative one marks the
+	 * predecessors of the positions decided at -level-1.
+	 * @return the number of positions decided.
+	 */
+	private long runPass(final int level) throws InterruptedException {
+		final AtomicLong next = new AtomicLong();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<Long>> workers = new ArrayList<Future<Long>>();
+		for(int t=0; t < threads; t++){
+			workers.add(pool.submit(new Callable<Long>() {
+				public Long call() {
+					Worker worker = new Worker();
+					long decided = 0;
+					for(long first=next.getAndAdd(CHUNK); first < values.length; first=next.getAndAdd(CHUNK)){
+						int last = (int) Math.min(values.length, first + CHUNK);
+						for(int index=(int) first; index < last; index++){
+							if(level < 0)
+								worker.markPredecessors(index, -level);
+							else if(worker.evaluate(index, level))
+								decided++;
+						}
+					}
+					return decided;
+				}
+			}));
+		}
+		pool.shutdown();
+		long decided = 0;
+		try {
+			for(Future<Long> worker : workers){
+				decided += worker.get();
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Tablebase pass failed", e.getCause());
+		}
+		return decided;
+	}
+	
+	private void write(File file) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(Tablebase.HEADER_BYTES);
+		header.putInt(Tablebase.MAGIC).putInt(Tablebase.VERSION).putInt(size).putInt(a).putInt(b).putInt(0).putLong(values.length);
+		header.flip();
+		RandomAccessFile output = new RandomAccessFile(file, "rw");
+		try {
+			output.setLength(0);
+			FileChannel channel = output.getChannel();
+			channel.write(header);
+			ByteBuffer body = ByteBuffer.wrap(values);
+			while(body.hasRemaining()){
+				channel.write(body);
+			}
+		} finally {
+			output.close();
+		}
+	}
+	
+	/**
+	 * The scratch state of one thread.
+	 */
+	private class Worker {
+		
+		private final Board board = new Board(size);
+		private final int[] moves = new int[board.getMaxMoves()];
+		private final int[] first = new int[a];
+		private final int[] second = new int[b];
+		
+		/**
+		 * Evaluates an open position marked for level, or every open
+		 * position at level 0.
+		 * @return true if the position was decided.
+		 */
+		boolean evaluate(int index, int level){
+			if(values[index] != 0 || (level > 0 && (marks[index] & 0xFF) != level))
+				return false;
+			setPosition(index);
+			int count = board.generateMoves(moves);
+			boolean allWon = true;
+			int nextMark = Integer.MAX_VALUE;
+			for(int i=0; i < count; i++){
+				board.makeMove(moves[i]);
+				int value = childValue(moves[i]);
+				board.undoMove(moves[i]);
+				if(value == Tablebase.DRAW){
+					allWon = false;
+					continue;
+				}
+				int plies = Tablebase.plies(value);
+				if(plies >= level){
+					//Not known at this level yet: captures say when, other moves are marked back.
+					allWon = false;
+					if(Board.moveCaptures(moves[i]) > 0)
+						nextMark = Math.min(nextMark, plies+1);
+				}else if(Tablebase.isLoss(value)){
+					return decide(index, level);
+				}
+			}
+			if(allWon)
+				return decide(index, level);
+			marks[index] = nextMark <= Tablebase.MAX_PLIES ? (byte) nextMark : 0;
+			return false;
+		}
+		
+		private boolean decide(int index, int level){
+			values[index] = (byte) (level+1);
+			marks[index] = 0;
+			return true;
+		}
+		
+		/**
+		 * Value of the position after a move, from the table or a finished one.
+		 */
+		private int childValue(int move){
+			Color toMove = board.currentPlayer();
+			if(board.pieceCount(toMove) < 2)
+				return 1; //Lost now.
+			if(Board.moveCaptures(move) == 0)
+				return values[(int) index(toMove)] & 0xFF;
+			int value = finished.probe(board);
+			if(value == Tablebase.NOT_FOUND)
+				throw new IllegalStateException("Missing tablebase for "+board.pieceCount(Color.WHITE)+"v"+board.pieceCount(Color.BLACK));
+			return value;
+		}
+		
+		/**
+		 * Marks for level the open positions with a quiet move to a
+		 * position decided at level-1.
+		 */
+		void markPredecessors(int index, int level){
+			if((values[index] & 0xFF) != level)
+				return;
+			setPosition(index);
+			Color mover = board.getOpponentColor();
+			long[] pieces = board.bitboard(mover);
+			long[] squares = {pieces[0], pieces[1]};
+			for(int w=0; w < squares.length; w++){
+				for(long bits=squares[w]; bits != 0; bits &= bits-1){
+					int to = (w<<6) + Long.numberOfTrailingZeros(bits);
+					//A move that captured would have led elsewhere.
+					if(board.countCaptures(mover, to) > 0)
+						continue;
+					markSlides(mover, to, level, -size);
+					markSlides(mover, to, level, size);
+					markSlides(mover, to, level, -1);
+					markSlides(mover, to, level, 1);
+				}
+			}
+		}
+		
+		private void markSlides(Color mover, int to, int level, int step){
+			int lin = to/size;
+			int col = to%size;
+			for(int from=to+step; ; from+=step){
+				if(step == 1 || step == -1){
+					if(from/size != lin || from < 0)
+						return;
+				}else if(from < 0 || from >= size*size || from%size != col){
+					return;
+				}
+				if(board.get(from/size, from%size) != null)
+					return;
+				int back = Board.packMove(to, from, 0);
+				board.makeNullMove();
+				board.makeMove(back);
+				int predecessor = (int) index(mover);
+				board.undoMove(back);
+				board.undoNullMove();
+				if(values[predecessor] == 0)
+					marks[predecessor] = (byte) level;
+			}
+		}
+		
+		private void setPosition(int index){
+			int side = Tablebase.unindex(index, size, first, second);
+			board.setPosition(first, second, side == 0 ? Color.WHITE : Color.BLACK);
+		}
+		
+		private long index(Color toMove){
+			return Tablebase.index(board.bitboard(Color.WHITE), board.bitboard(Color.BLACK),
+					toMove == Color.WHITE ? 0 : 1, size, a, b);
+		}
+	}
+	
+	/**
+	 * Usage: TablebaseGenerator directory [-size n] [-pieces n] [-threads n]
+	 * Generates every table with up to pieces pieces (default 5: 2v2 and 2v3).
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length == 0){
+			System.out.println("Usage: TablebaseGenerator directory [-size n] [-pieces n] [-threads n]");
+			return;
+		}
+		File directory = new File(args[0]);
+		int size = 9;
+		int pieces = 5;
+		int threads = Runtime.getRuntime().availableProcessors();
+		for(int i=1; i < args.length; i++){
+			if(args[i].equals("-size"))
+				size = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-pieces"))
+				pieces = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-threads"))
+				threads = Integer.parseInt(args[++i]);
+			else
+				throw new IllegalArgumentException("Unknown option: "+args[i]);
+		}
+		directory.mkdirs();
+		new TablebaseGenerator(size, directory, threads).generateAll(pieces);
+	}
+	
+}//end class.
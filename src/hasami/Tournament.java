@@ -0,0 +1,323 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import hasami.Board.Color;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless self-play between two engine configurations, A and B. Games run
+ * concurrently, each worker thread with its own Board and Engines. Every
+ * random opening is played twice with the colours swapped. Each game is
+ * written as one line as soon as it ends:
+ * <pre>
+ * game  white(A|B)  result(1-0|0-1|1/2)  reason  plies  move:ms move:ms ...
+ * </pre>
+ * where the opening moves have no time.
+ */
+public class Tournament {
+
+	/**
+	 * The settings of one side.
+	 */
+	public static class Player {
+		public final SearchOptions options = new SearchOptions();
+		/** Fixed search depth, used when moveTime is 0. */
+		public int depth = 4;
+		/** Milliseconds per move, or 0 to search to depth. */
+		public long moveTime;
+		/** Evaluation weights, or null for the hand-picked ones. */
+		public EvalWeights weights;
+		
+		/**
+		 * Applies "name=value" settings: depth, moveTime, weights (a file) or SearchOptions fields.
+		 */
+		public void set(String setting){
+			if(setting.startsWith("depth="))
+				depth = Integer.parseInt(setting.substring(6));
+			else if(setting.startsWith("moveTime="))
+				moveTime = Long.parseLong(setting.substring(9));
+			else if(setting.startsWith("weights=")){
+				try {
+					weights = EvalWeights.load(new File(setting.substring(8)));
+				} catch (IOException e) {
+					throw new IllegalArgumentException("Cannot read the weights: "+setting, e);
+				}
+			}else
+				options.setAll(setting);
+		}
+		
+		@Override
+		public String toString(){
+			return (moveTime > 0 ? "moveTime="+moveTime : "depth="+depth)+(weights != null ? " "+weights : "")+" "+options;
+		}
+	}
+	
+	public final Player a = new Player();
+	public final Player b = new Player();
+	public int boardSize = 9;
+	/** Random moves played before the engines take over. */
+	public int openingPlies = 4;
+	/** Games still running after this many plies are drawn; 0 disables the rule. */
+	public int maxPlies = 300;
+	/** Games are drawn when a position occurs this many times; 0 disables the rule. */
+	public int repetitions = 3;
+	/** Games are drawn after this many plies without a capture; 0 disables the rule. */
+	public int quietPlies = 100;
+	public long seed = 1;
+	/** When set, every game is also appended to it. */
+	public GameLog log;
+	
+	//-- Totals from A's point of view. --//
+	private final AtomicInteger winsA = new AtomicInteger();
+	private final AtomicInteger winsB = new AtomicInteger();
+	private final AtomicInteger draws = new AtomicInteger();
+	
+	/**
+	 * Plays games over threads workers, writing each game to output.
+	 */
+	public void run(final int games, int threads, final Writer output) throws IOException, InterruptedException {
+		final AtomicInteger next = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> workers = new ArrayList<Future<?>>();
+		for(int t=0; t < threads; t++){
+			workers.add(pool.submit(new Runnable() {
+				public void run() {
+					Engine engineA = new Engine(a.depth, a.options);
+					Engine engineB = new Engine(b.depth, b.options);
+					engineA.setWeights(a.weights);
+					engineB.setWeights(b.weights);
+					try {
+						for(int game=next.getAndIncrement(); game < games; game=next.getAndIncrement()){
+							String line = play(game, engineA, engineB);
+							synchronized(output){
+								output.write(line);
+								output.write('\n');
+								output.flush();
+							}
+						}
+					} catch (IOException e) {
+						throw new RuntimeException("Cannot write the results", e);
+					} finally {
+						engineA.shutdown();
+						engineB.shutdown();
+					}
+				}
+			}));
+		}
+		pool.shutdown();
+		try {
+			for(Future<?> worker : workers){
+				worker.get();
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Tournament game failed", e.getCause());
+		}
+	}
+	
+	/**
+	 * Plays one game and returns its result line.
+	 */
+	String play(int game, Engine engineA, Engine engineB){
+		Board board = new Board(boardSize);
+		board.setSeed(seed + game);
+		board.setRepetitionLimit(repetitions);
+		Board initial = new Board(board);
+		StringBuilder moves = new StringBuilder();
+		int[] packed = new int[Math.max(openingPlies, 64)];
+		playOpening(board, new Random(seed + game/2), moves, packed);
+		//A has white in even games, B in odd ones.
+		Color colorA = game % 2 == 0 ? Color.WHITE : Color.BLACK;
+		engineA.newGame();
+		engineB.newGame();
+		
+		int plies = openingPlies;
+		String reason = "capture";
+		while(!board.isGameOver()){
+			if(maxPlies > 0 && plies >= maxPlies){
+				reason = "maxplies";
+				break;
+			}
+			if(quietPlies > 0 && board.getReversiblePlies() >= quietPlies){
+				reason = "quietplies";
+				break;
+			}
+			Player player = board.currentPlayer() == colorA ? a : b;
+			Engine engine = board.currentPlayer() == colorA ? engineA : engineB;
+			long start = System.nanoTime();
+			HasamiMove move = player.moveTime > 0
+					? engine.machineMove(board, board.currentPlayer(), player.moveTime)
+					: engine.machineMove(board, board.currentPlayer());
+			long millis = (System.nanoTime() - start)/1000000;
+			if(move == null){
+				reason = "nomoves";
+				break;
+			}
+			if(plies == packed.length)
+				packed = Arrays.copyOf(packed, 2*plies);
+			packed[plies] = board.encodeMove(move);
+			board.makeMove(move);
+			moves.append(' ').append(move.toString().trim()).append(':').append(millis);
+			plies++;
+		}
+		
+		if(!board.hasWinner() && board.isDraw())
+			reason = "repetition";
+		String result;
+		if(reason.equals("maxplies") || reason.equals("quietplies") || reason.equals("repetition")){
+			draws.incrementAndGet();
+			result = "1/2";
+		}else{
+			//The side to move has lost its pieces or cannot move.
+			Color winner = board.getOpponentColor();
+			(winner == colorA ? winsA : winsB).incrementAndGet();
+			result = winner == Color.WHITE ? "1-0" : "0-1";
+		}
+		if(log != null){
+			int outcome = result.equals("1/2") ? GameLog.DRAW : result.equals("1-0") ? GameLog.WHITE_WINS : GameLog.BLACK_WINS;
+			try {
+				log.append(initial, packed, plies, outcome);
+			} catch (IOException e) {
+				throw new RuntimeException("Cannot log game "+game, e);
+			}
+		}
+		return game+"\t"+(colorA == Color.WHITE ? "A" : "B")+"\t"+result+"\t"+reason+"\t"+plies+"\t"+moves.toString().trim();
+	}
+	
+	/**
+	 * Plays openingPlies random moves, drawing again if the game ends.
+	 */
+	private void playOpening(Board board, Random random, StringBuilder moves, int[] packed){
+		List<HasamiMove> played = new ArrayList<HasamiMove>();
+		while(played.size() < openingPlies){
+			List<HasamiMove> legal = board.getMoves();
+			if(board.isGameOver() || legal.isEmpty()){
+				for(int i=played.size()-1; i >= 0; i--){
+					board.undoMove(played.get(i));
+				}
+				played.clear();
+				continue;
+			}
+			HasamiMove move = legal.get(random.nextInt(legal.size()));
+			packed[played.size()] = board.encodeMove(move);
+			board.makeMove(move);
+			played.add(move);
+		}
+		for(HasamiMove move : played){
+			moves.append(' ').append(move.toString().trim());
+		}
+	}
+	
+	public int getWinsA(){
+		return winsA.get();
+	}
+	
+	public int getWinsB(){
+		return winsB.get();
+	}
+	
+	public int getDraws(){
+		return draws.get();
+	}
+	
+	/**
+	 * A's score and the Elo difference it implies.
+	 */
+	public String summary(){
+		int games = getWinsA() + getWinsB() + getDraws();
+		double score = games == 0 ? 0.5 : (getWinsA() + getDraws()/2d)/games;
+		double clamped = Math.min(Math.max(score, 0.001), 0.999);
+		double elo = -400*Math.log10(1/clamped - 1);
+		return "A "+getWinsA()+" wins, B "+getWinsB()+" wins, "+getDraws()+" draws; A scores "
+				+String.format("%.1f%% (%+.0f Elo)", 100*score, elo);
+	}
+	
+	/**
+	 * Usage: Tournament output [-games n] [-threads n] [-size n] [-openings plies]
+	 *        [-maxplies n] [-repetitions n] [-quietplies n] [-seed n] [-log file] [-a name=value...] [-b name=value...]
+	 * The names are depth, moveTime, weights or SearchOptions fields.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length == 0){
+			System.out.println("Usage: Tournament output [-games n] [-threads n] [-size n] [-openings plies] [-maxplies n] [-repetitions n] [-quietplies n] [-seed n] [-log file] [-a name=value...] [-b name=value...]");
+			return;
+		}
+		Tournament tournament = new Tournament();
+		int games = 100;
+		int threads = Runtime.getRuntime().availableProcessors();
+		Player target = null;
+		for(int i=1; i < args.length; i++){
+			if(args[i].equals("-a"))
+				target = tournament.a;
+			else if(args[i].equals("-b"))
+				target = tournament.b;
+			else if(args[i].equals("-games"))
+				games = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-threads"))
+				threads = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-size"))
+				tournament.boardSize = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-openings"))
+				tournament.openingPlies = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-maxplies"))
+				tournament.maxPlies = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-quietplies"))
+				tournament.quietPlies = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-repetitions"))
+				tournament.repetitions = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-seed"))
+				tournament.seed = Long.parseLong(args[++i]);
+			else if(args[i].equals("-log"))
+				tournament.log = new GameLog(new File(args[++i]));
+			else if(target != null && args[i].indexOf('=') > 0)
+				target.set(args[i]);
+			else
+				throw new IllegalArgumentException("Unknown option: "+args[i]);
+		}
+		System.out.println("A: "+tournament.a);
+		System.out.println("B: "+tournament.b);
+		
+		long start = System.nanoTime();
+		Writer output = new BufferedWriter(new FileWriter(args[0]));
+		try {
+			tournament.run(games, threads, output);
+		} finally {
+			output.close();
+			if(tournament.log != null)
+				tournament.log.close();
+		}
+		System.out.println(tournament.summary()+" in "+(System.nanoTime()-start)/1000000000+" s");
+	}
+	
+}//end class.
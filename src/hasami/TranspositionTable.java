@@ -0,0 +1,122 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size transposition table shared by the searches of an Engine.
+ * Each slot keeps the key xor'ed with its data word so that a torn write
+ * is detected as a miss instead of being returned as a wrong entry.
+ */
+public class TranspositionTable {
+
+	public static final int EXACT = 1;
+	public static final int LOWER = 2;
+	public static final int UPPER = 3;
+	
+	private static final int ENTRY_BYTES = 16;
+	
+	//-- Data word: bits 0-13 move squares, 14-21 depth, 22-23 bound, 24-31 generation, 32-63 score. --//
+	private static final int MOVE_MASK = (1 << 14) - 1;
+	private static final int DEPTH_SHIFT = 14;
+	private static final int BOUND_SHIFT = 22;
+	private static final int GENERATION_SHIFT = 24;
+	private static final int SCORE_SHIFT = 32;
+	
+	private final long[] keys;
+	private final long[] data;
+	private final int mask;
+	private int generation;
+	
+	public TranspositionTable(int megabytes){
+		long entries = Math.max(2, ((long) megabytes << 20) / ENTRY_BYTES);
+		int size = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+		keys = new long[size];
+		data = new long[size];
+		mask = size - 1;
+	}
+	
+	/**
+	 * Marks the start of a new search, so entries from older searches are replaced first.
+	 */
+	public void newSearch(){
+		generation = (generation + 1) & 0xFF;
+	}
+	
+	public void clear(){
+		Arrays.fill(keys, 0);
+		Arrays.fill(data, 0);
+	}
+	
+	/**
+	 * Returns the data word stored for key, or 0 when there is none.
+	 */
+	public long probe(long key){
+		int index = (int) key & mask & ~1;
+		long entry = data[index];
+		if((keys[index] ^ entry) == key && entry != 0)
+			return entry;
+		entry = data[index+1];
+		if((keys[index+1] ^ entry) == key && entry != 0)
+			return entry;
+		return 0;
+	}
+	
+	public void store(long key, int depth, int bound, double score, int move){
+		int index = (int) key & mask & ~1;
+		long deep = data[index];
+		//First slot prefers depth, second slot is always replaced.
+		if((keys[index] ^ deep) != key && generation(deep) == generation && depth(deep) > depth)
+			index++;
+		long entry = (move & MOVE_MASK)
+				| ((long) depth << DEPTH_SHIFT)
+				| ((long) bound << BOUND_SHIFT)
+				| ((long) generation << GENERATION_SHIFT)
+				| ((long) Float.floatToRawIntBits((float) score) << SCORE_SHIFT);
+		keys[index] = key ^ entry;
+		data[index] = entry;
+	}
+	
+	public static int move(long entry){
+		return (int) entry & MOVE_MASK;
+	}
+	
+	public static int depth(long entry){
+		return (int) (entry >>> DEPTH_SHIFT) & 0xFF;
+	}
+	
+	public static int bound(long entry){
+		return (int) (entry >>> BOUND_SHIFT) & 3;
+	}
+	
+	public static double score(long entry){
+		return Float.intBitsToFloat((int) (entry >>> SCORE_SHIFT));
+	}
+	
+	private static int generation(long entry){
+		return (int) (entry >>> GENERATION_SHIFT) & 0xFF;
+	}
+	
+	public int size(){
+		return keys.length;
+	}
+	
+}//end class.
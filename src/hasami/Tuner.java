@@ -0,0 +1,305 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tunes EvalWeights on the games of a GameLog, Texel style: every position
+ * is labelled with its game's result, 1 for a white win, 0 for a black one
+ * and 1/2 for a draw, and the weights minimise the mean squared error
+ * between the labels and sigmoid(K*evaluation). K is fitted first, with
+ * the starting weights, and the pieces weight stays fixed so the scale of
+ * the evaluation does not drift.
+ *
+ * The evaluation terms of every position are read once into a flat array,
+ * so each step of the descent is a pass of multiply-adds split over the
+ * threads, with no allocation and no Board involved.
+ */
+public class Tuner {
+
+	//-- Terms of evaluate(), the ones before FAST_ADVANCE, which is fitted apart. --//
+	private static final int TERMS = EvalWeights.FAST_ADVANCE;
+	//-- Adam constants. --//
+	private static final double BETA1 = 0.9;
+	private static final double BETA2 = 0.999;
+	private static final double EPSILON = 1e-8;
+	
+	/** Plies at the start of each game that are not used, as they are mostly random openings. */
+	public int skipPlies = 4;
+	/** Keep only positions where the side to move cannot capture, whose evaluation is meaningful. */
+	public boolean quietOnly = true;
+	public int iterations = 1000;
+	public double rate = 0.002;
+	public int threads = Runtime.getRuntime().availableProcessors();
+	
+	//-- terms[i*TERMS+t] is term t of position i, labels[i] its game's result. --//
+	private float[] terms = new float[4096*TERMS];
+	private float[] labels = new float[4096];
+	private int count;
+	private double k = 1;
+	
+	/**
+	 * Reads the positions of the finished games in log.
+	 */
+	public void load(GameLog log){
+		double[] position = new double[EvalWeights.SIZE];
+		int[] captures = null;
+		int[] moves = null;
+		for(long game=0; game < log.size(); game++){
+			int result = log.result(game);
+			if(result == GameLog.UNKNOWN)
+				continue;
+			float label = result == GameLog.WHITE_WINS ? 1 : result == GameLog.BLACK_WINS ? 0 : 0.5f;
+			Board board = log.position(game, 0);
+			if(captures == null || captures.length < board.getMaxMoves()){
+				captures = new int[board.getMaxMoves()];
+				moves = new int[board.getMaxMoves()];
+			}
+			int plies = log.plies(game);
+			for(int ply=0; ply <= plies; ply++){
+				if(ply >= skipPlies && !board.isGameOver() && (!quietOnly || board.generateCaptures(captures) == 0)){
+					board.evaluationTerms(position);
+					add(position, label);
+				}
+				if(ply < plies)
+					board.makeMove(PositionCodec.decodeMove(board, (short) log.move(game, ply), moves));
+			}
+		}
+	}
+	
+	private void add(double[] position, float label){
+		if(count == labels.length){
+			labels = Arrays.copyOf(labels, 2*count);
+			terms = Arrays.copyOf(terms, 2*count*TERMS);
+		}
+		for(int t=0; t < TERMS; t++){
+			terms[count*TERMS + t] = (float) position[t];
+		}
+		labels[count++] = label;
+	}
+	
+	public int size(){
+		return count;
+	}
+	
+	/**
+	 * Fits K, then the weights of evaluate() and the advance weight of
+	 * evaluateFast(), starting from weights.
+	 * @return the tuned weights.
+	 */
+	public EvalWeights tune(EvalWeights weights) throws InterruptedException {
+		int threads = Math.max(1, this.threads);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Pass> passes = new ArrayList<Pass>();
+			for(int t=0; t < threads; t++){
+				passes.add(new Pass((int) ((long) count*t/threads), (int) ((long) count*(t+1)/threads)));
+			}
+			double[] w = Arrays.copyOf(weights.toArray(), TERMS);
+			fitK(pool, passes, w);
+			System.out.println("K "+String.format("%.4f", k)+", error "+String.format("%.6f", error(pool, passes, w, null)));
+			
+			boolean[] free = new boolean[TERMS];
+			Arrays.fill(free, true);
+			free[EvalWeights.PIECES] = false;
+			descend(pool, passes, w, free);
+			EvalWeights tuned = weights.copy();
+			for(int t=0; t < TERMS; t++){
+				tuned.set(t, w[t]);
+			}
+			
+			//evaluateFast(): the pieces and the advance only.
+			double[] fast = new double[TERMS];
+			fast[EvalWeights.PIECES] = w[EvalWeights.PIECES];
+			fast[EvalWeights.ADVANCE] = weights.get(EvalWeights.FAST_ADVANCE);
+			free = new boolean[TERMS];
+			free[EvalWeights.ADVANCE] = true;
+			descend(pool, passes, fast, free);
+			tuned.set(EvalWeights.FAST_ADVANCE, fast[EvalWeights.ADVANCE]);
+			return tuned;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Ternary search of the K minimising the error of w.
+	 */
+	private void fitK(ExecutorService pool, List<Pass> passes, double[] w) throws InterruptedException {
+		double low = 0.01, high = 10;
+		while(high - low > 0.001){
+			double third = (high - low)/3;
+			k = low + third;
+			double lowError = error(pool, passes, w, null);
+			k = high - third;
+			if(lowError < error(pool, passes, w, null))
+				high -= third;
+			else
+				low += third;
+		}
+		k = (low + high)/2;
+	}
+	
+	/**
+	 * Adam descent on the free weights of w.
+	 */
+	private void descend(ExecutorService pool, List<Pass> passes, double[] w, boolean[] free) throws InterruptedException {
+		double[] gradient = new double[TERMS];
+		double[] m = new double[TERMS];
+		double[] v = new double[TERMS];
+		for(int i=1; i <= iterations; i++){
+			double error = error(pool, passes, w, gradient);
+			for(int t=0; t < TERMS; t++){
+				if(!free[t])
+					continue;
+				m[t] = BETA1*m[t] + (1-BETA1)*gradient[t];
+				v[t] = BETA2*v[t] + (1-BETA2)*gradient[t]*gradient[t];
+				double mHat = m[t]/(1 - Math.pow(BETA1, i));
+				double vHat = v[t]/(1 - Math.pow(BETA2, i));
+				w[t] -= rate*mHat/(Math.sqrt(vHat) + EPSILON);
+			}
+			if(i % 100 == 0 || i == iterations)
+				System.out.println("Iteration "+i+", error "+String.format("%.6f", error));
+		}
+	}
+	
+	/**
+	 * The mean squared error of w, and its gradient when gradient is not null.
+	 */
+	private double error(ExecutorService pool, List<Pass> passes, double[] w, double[] gradient) throws InterruptedException {
+		for(Pass pass : passes){
+			pass.weights = w;
+			pass.withGradient = gradient != null;
+		}
+		try {
+			for(Future<Void> future : pool.invokeAll(passes)){
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Tuning pass failed", e.getCause());
+		}
+		double error = 0;
+		if(gradient != null)
+			Arrays.fill(gradient, 0);
+		for(Pass pass : passes){
+			error += pass.error;
+			for(int t=0; gradient != null && t < TERMS; t++){
+				gradient[t] += pass.gradient[t];
+			}
+		}
+		for(int t=0; gradient != null && t < TERMS; t++){
+			gradient[t] /= Math.max(1, count);
+		}
+		return error/Math.max(1, count);
+	}
+	
+	/**
+	 * The sums over one slice of the positions.
+	 */
+	private final class Pass implements Callable<Void> {
+		private final int from;
+		private final int to;
+		private final double[] gradient = new double[TERMS];
+		double[] weights;
+		boolean withGradient;
+		double error;
+		
+		Pass(int from, int to){
+			this.from = from;
+			this.to = to;
+		}
+		
+		public Void call() {
+			double[] w = weights;
+			double sum = 0;
+			Arrays.fill(gradient, 0);
+			for(int i=from; i < to; i++){
+				int base = i*TERMS;
+				double eval = 0;
+				for(int t=0; t < TERMS; t++){
+					eval += w[t]*terms[base + t];
+				}
+				double predicted = 1/(1 + Math.exp(-k*eval));
+				double difference = predicted - labels[i];
+				sum += difference*difference;
+				if(withGradient){
+					double slope = 2*difference*predicted*(1 - predicted)*k;
+					for(int t=0; t < TERMS; t++){
+						gradient[t] += slope*terms[base + t];
+					}
+				}
+			}
+			error = sum;
+			return null;
+		}
+	}
+	
+	/**
+	 * Usage: Tuner log weights [-threads n] [-iterations n] [-rate r] [-skip plies] [-all] [-start file]
+	 * Tunes on the games of the GameLog log and writes the weights to the file weights,
+	 * to be loaded with -weights. With -all positions with captures pending are kept.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length < 2){
+			System.out.println("Usage: Tuner log weights [-threads n] [-iterations n] [-rate r] [-skip plies] [-all] [-start file]");
+			return;
+		}
+		Tuner tuner = new Tuner();
+		EvalWeights start = new EvalWeights();
+		for(int i=2; i < args.length; i++){
+			if(args[i].equals("-threads"))
+				tuner.threads = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-iterations"))
+				tuner.iterations = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-rate"))
+				tuner.rate = Double.parseDouble(args[++i]);
+			else if(args[i].equals("-skip"))
+				tuner.skipPlies = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-all"))
+				tuner.quietOnly = false;
+			else if(args[i].equals("-start"))
+				start = EvalWeights.load(new File(args[++i]));
+			else
+				throw new IllegalArgumentException("Unknown option: "+args[i]);
+		}
+		long begin = System.nanoTime();
+		GameLog log = new GameLog(new File(args[0]));
+		try {
+			tuner.load(log);
+		} finally {
+			log.close();
+		}
+		System.out.println(tuner.size()+" positions read in "+(System.nanoTime()-begin)/1000000+" ms");
+		EvalWeights tuned = tuner.tune(start);
+		tuned.save(new File(args[1]));
+		System.out.println(tuned+" in "+(System.nanoTime()-begin)/1000000000+" s");
+	}
+	
+}//end class.
@@ -0,0 +1,114 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class BatchAnalyzerTest {
+
+	@Test
+	public void corruptPositionIsReportedAndSkipped() throws IOException, InterruptedException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Board board = new Board(9);
+		PositionCodec.write(board, out);
+		int corrupt = out.size();
+		PositionCodec.write(board, out);
+		board.makeMove(HasamiMove.parse("a1-a5", 9));
+		PositionCodec.write(board, out);
+		byte[] bytes = out.toByteArray();
+		//A tenth white piece on square 40 of the second position.
+		bytes[corrupt + 1 + 5] |= 1;
+		
+		final Map<Long, SearchResult> analysed = new TreeMap<Long, SearchResult>();
+		final Map<Long, RuntimeException> failed = new TreeMap<Long, RuntimeException>();
+		BatchAnalyzer analyzer = new BatchAnalyzer(2, new SearchOptions());
+		analyzer.depth = 2;
+		long count = analyzer.analyse(new ByteArrayInputStream(bytes), new BatchAnalyzer.Listener() {
+			public void positionAnalysed(long index, Board position, SearchResult result){
+				analysed.put(index, result);
+			}
+			
+			public void positionFailed(long index, Board position, RuntimeException error){
+				assertNull(position);
+				failed.put(index, error);
+			}
+		});
+		assertEquals(3, count);
+		assertEquals(2, analysed.size());
+		assertNotNull(analysed.get(0L).bestMove);
+		assertNotNull(analysed.get(2L).bestMove);
+		assertEquals(1, failed.size());
+		assertNotNull(failed.get(1L));
+	}
+	
+	@Test
+	public void logPositionsAreReplayedInOrder() throws IOException, InterruptedException {
+		File file = File.createTempFile("batch", ".log");
+		file.delete();
+		final GameLog log = new GameLog(file);
+		try{
+			Random random = new Random(3);
+			for(int game=0; game < 3; game++){
+				Board board = new Board(9);
+				Board start = new Board(board);
+				int[] moves = new int[board.getMaxMoves()];
+				int[] played = new int[12];
+				for(int ply=0; ply < played.length; ply++){
+					played[ply] = moves[random.nextInt(board.generateMoves(moves))];
+					board.makeMove(played[ply]);
+				}
+				log.append(start, played, played.length, GameLog.DRAW);
+			}
+			final Map<Long, Long> hashes = new TreeMap<Long, Long>();
+			BatchAnalyzer analyzer = new BatchAnalyzer(2, new SearchOptions());
+			analyzer.depth = 1;
+			long count = analyzer.analyse(log, new BatchAnalyzer.Listener() {
+				public void positionAnalysed(long index, Board position, SearchResult result){
+					hashes.put(index, position.getHash());
+				}
+				
+				public void positionFailed(long index, Board position, RuntimeException error){
+					throw error;
+				}
+			});
+			assertEquals(3*13, count);
+			for(long index=0; index < count; index++){
+				assertEquals(log.position(index/13, (int) (index%13)).getHash(), (long) hashes.get(index));
+			}
+		}finally{
+			log.close();
+			file.delete();
+			new File(file.getPath()+".idx").delete();
+		}
+	}
+	
+}//end class.
@@ -0,0 +1,137 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import hasami.Board.Color;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BoardTest {
+
+	@Test
+	public void setPositionRejectsTooManyPieces(){
+		Board board = new Board(9);
+		long hash = board.getHash();
+		int[] white = new int[10];
+		for(int i=0; i < white.length; i++){
+			white[i] = 18 + i;
+		}
+		try{
+			board.setPosition(white, new int[]{0}, Color.WHITE);
+			fail("10 pieces accepted on 9x9");
+		}catch(IllegalArgumentException expected){
+		}
+		assertEquals(hash, board.getHash());
+		assertEquals(9, board.pieceCount(Color.WHITE));
+		assertEquals(9, board.pieceCount(Color.BLACK));
+	}
+	
+	@Test
+	public void setPositionRejectsSharedSquareUnchanged(){
+		Board board = new Board(9);
+		long hash = board.getHash();
+		try{
+			board.setPosition(new int[]{40, 41}, new int[]{41}, Color.BLACK);
+			fail("Square 41 accepted twice");
+		}catch(IllegalArgumentException expected){
+		}
+		assertEquals(hash, board.getHash());
+		assertEquals(9, board.pieceCount(Color.WHITE));
+	}
+	
+	@Test
+	public void weightsAreNotShared(){
+		Board board = new Board(9);
+		board.makeMove(HasamiMove.parse("a1-a5", 9));
+		board.setSeed(1);
+		double score = board.evaluate(Color.WHITE, 0);
+		board.getWeights().set(EvalWeights.ADVANCE, 10);
+		board.setSeed(1);
+		assertEquals(score, board.evaluate(Color.WHITE, 0), 0);
+		
+		Board other = new Board(9);
+		other.makeMove(HasamiMove.parse("a1-a5", 9));
+		other.setSeed(1);
+		assertEquals(score, other.evaluate(Color.WHITE, 0), 0);
+	}
+	
+	@Test
+	public void patternTermsAgreeWithAndWithoutNeighbours(){
+		EvalWeights weighted = new EvalWeights();
+		weighted.set(EvalWeights.THREATS, 0.01);
+		Random random = new Random(7);
+		for(int game=0; game < 20; game++){
+			Board plain = new Board(9);
+			Board full = new Board(9);
+			full.setWeights(weighted);
+			double[] expected = new double[EvalWeights.SIZE];
+			double[] actual = new double[EvalWeights.SIZE];
+			int[] moves = new int[plain.getMaxMoves()];
+			for(int ply=0; ply < 150 && !plain.isGameOver(); ply++){
+				int move = moves[random.nextInt(plain.generateMoves(moves))];
+				plain.makeMove(move);
+				full.makeMove(move);
+				full.evaluationTerms(expected);
+				plain.evaluationTerms(actual);
+				assertArrayEquals(expected, actual, 0);
+			}
+			//Weighting the terms later counts them from scratch.
+			plain.setWeights(weighted);
+			plain.evaluationTerms(actual);
+			assertArrayEquals(expected, actual, 0);
+			plain.setSeed(1);
+			full.setSeed(1);
+			assertEquals(full.evaluate(Color.WHITE, 0), plain.evaluate(Color.WHITE, 0), 0);
+		}
+	}
+	
+	@Test
+	public void copyingLeavesTheNoiseAlone(){
+		Board board = new Board(9);
+		Board same = new Board(9);
+		board.setSeed(5);
+		same.setSeed(5);
+		Board copy = new Board(board);
+		assertEquals(same.evaluate(Color.WHITE, 0), board.evaluate(Color.WHITE, 0), 0);
+		//Copies of equally seeded boards are alike.
+		Board other = new Board(same);
+		assertEquals(other.evaluate(Color.WHITE, 0), copy.evaluate(Color.WHITE, 0), 0);
+	}
+	
+	@Test
+	public void fullSideFitsTheMoveBuffer(){
+		//One piece per row and column, on the diagonal: every piece has the most moves.
+		Board board = new Board(9);
+		int[] white = new int[9];
+		for(int i=0; i < 9; i++){
+			white[i] = i*9 + i;
+		}
+		board.setPosition(white, new int[0], Color.WHITE);
+		int[] moves = new int[board.getMaxMoves()];
+		assertEquals(9*2*8, board.generateMoves(moves));
+	}
+	
+}//end class.
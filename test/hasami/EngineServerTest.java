@@ -0,0 +1,88 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class EngineServerTest {
+
+	private static EngineServer server;
+	
+	@BeforeClass
+	public static void start(){
+		server = new EngineServer(new EnginePool(1, 4, new SearchOptions()));
+	}
+	
+	@AfterClass
+	public static void stop(){
+		server.shutdown();
+	}
+	
+	@Test
+	public void searchesStartPosition() throws IOException {
+		String[] lines = session("position startpos moves A1-A5", "go depth 2", "quit");
+		assertTrue(lines[lines.length-1].startsWith("bestmove "));
+		assertFalse(lines[lines.length-1].equals("bestmove none"));
+	}
+	
+	@Test
+	public void rejectsTooManyPieces() throws IOException {
+		StringBuilder squares = new StringBuilder();
+		for(int sq=0; sq < 81; sq++){
+			squares.append(sq < 10 ? 'O' : sq >= 72 ? 'X' : '.');
+		}
+		String[] lines = session("position board "+squares+" w", "go depth 2", "quit");
+		assertTrue(lines[0], lines[0].startsWith("info string error: too many pieces"));
+		//The position is left as it was: the start position.
+		assertTrue(lines[lines.length-1].startsWith("bestmove "));
+		assertFalse(lines[lines.length-1].equals("bestmove none"));
+	}
+	
+	@Test
+	public void finishedGameHasNoMove() throws IOException {
+		StringBuilder squares = new StringBuilder();
+		for(int sq=0; sq < 81; sq++){
+			squares.append(sq < 9 ? 'O' : '.');
+		}
+		String[] lines = session("position board "+squares+" b", "go depth 2", "quit");
+		assertEquals("bestmove none", lines[lines.length-1]);
+	}
+	
+	private static String[] session(String... commands) throws IOException {
+		StringBuilder input = new StringBuilder();
+		for(String command : commands){
+			input.append(command).append('\n');
+		}
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		server.serve(new ByteArrayInputStream(input.toString().getBytes("ISO-8859-1")), output);
+		return output.toString("ISO-8859-1").split("\r?\n");
+	}
+	
+}//end class.
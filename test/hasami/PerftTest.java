@@ -0,0 +1,134 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import hasami.Board.Color;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Leaf counts at depths 1-4 computed with the list-based Board the bitboard
+ * one replaced, from the start position and from positions reached by
+ * games that capture whenever they can.
+ */
+public class PerftTest {
+
+	private static final String[] CAPTURES_9X9 = {
+		"i1-i6", "a9-a2", "i6-h6", "f9-f4", "b1-b8", "i9-i1", "h6-e6", "a2-g2", "h1-h6", "c9-c5",
+		"a1-a2", "g2-h2", "h6-h5", "h2-h3", "a2-a9", "h9-h7", "b8-b6", "e9-f9", "e6-c6", "d9-d4",
+		"c1-c4", "f4-f3", "e1-e7", "f9-f8", "e7-e3", "b9-c9", "e3-e4", "h7-h9", "g1-h1", "g9-g1",
+		"b6-b8", "f3-b3", "c6-c5", "c9-d9", "a9-a8", "g1-g3", "a8-a7", "d9-a9", "d1-d3", "h3-h2",
+		"e4-g4", "b3-b7", "c5-c7", "f8-c8", "d3-d8", "i1-i4", "h5-h7", "h9-e9", "d8-f8", "i4-h4",
+		"c7-b7", "e9-e2", "g4-g6", "h2-g2", "f8-e8", "g3-e3", "g6-d6", "a9-h9", "f1-f2", "h4-h2"};
+	
+	private static final String[] ENDGAME_9X9 = {
+		"c1-c5", "e9-e7", "b1-b6", "h9-h7", "c5-c7", "a9-a3", "h1-h4", "i9-i2", "c7-c3", "g9-g5",
+		"c3-i3", "g5-g9", "h4-g4", "e7-e9", "f1-f5", "c9-c8", "f5-f7", "a3-g3", "g1-g2", "e9-e8",
+		"g4-g3", "h7-h4", "f7-i7", "f9-f6", "b6-b2", "f6-f9", "b2-a2", "c8-c7", "g3-g8", "c7-g7",
+		"a2-a7", "e8-b8", "i3-i6", "b8-b1", "d1-c1", "h4-b4", "a7-a5", "g7-d7", "i6-d6", "b4-b3",
+		"i1-i5", "b3-d3", "e1-e9", "b9-c9", "d6-c6", "d7-h7", "g2-g7", "d9-d8", "a5-d5", "d3-h3",
+		"i7-i8", "d8-h8", "g7-g8", "f9-f8", "d5-e5", "h3-h8", "e5-a5", "c9-e9", "c6-c4", "f8-f3",
+		"i8-i9", "g9-g4", "a5-f5", "h8-h4", "i5-h5", "e9-d9", "c1-g1", "f3-b3", "a1-c1", "b3-h3",
+		"c4-b4", "d9-h9", "g1-g2", "h9-h6", "i9-d9", "h4-h5", "c1-d1", "h6-d6", "f5-g5", "d6-g6"};
+	
+	private static final String[] CAPTURES_7X7 = {
+		"f1-f2", "c7-c6", "a1-a3", "c6-c7", "a3-a6", "e7-e5", "b1-b4", "e5-a5", "f2-e2", "d7-d3",
+		"b4-b3", "f7-f4", "e2-f2", "b7-b5", "f2-f1", "f4-f2", "c1-c5", "d3-d5", "b3-f3", "c7-c3",
+		"d1-b1", "a7-d7", "f3-f6", "a5-a1", "g1-g5", "d7-c7", "f1-g1", "c3-c6", "e1-f1", "c6-c1",
+		"f6-f4", "a1-a4", "f4-f5", "c1-c5", "f1-e1", "b5-b7", "e1-e5", "a4-b4", "g5-g6", "c5-b5",
+		"g1-g2", "b4-e4", "g2-c2", "d5-d3", "f5-f2", "d3-e3", "c2-e2"};
+	
+	@Test
+	public void startPosition(){
+		assertPerft(new Board(9), 63L, 3717L, 254219L, 16599273L);
+	}
+	
+	@Test
+	public void smallBoardStartPosition(){
+		assertPerft(new Board(5), 15L, 195L, 3517L, 60028L);
+	}
+	
+	@Test
+	public void capturesMidgame(){
+		assertPerft(play(9, CAPTURES_9X9), 77L, 3211L, 239530L, 10946881L);
+	}
+	
+	@Test
+	public void capturesEndgame(){
+		assertPerft(play(9, ENDGAME_9X9), 53L, 2309L, 115862L, 5361673L);
+	}
+	
+	@Test
+	public void capturesSmallBoard(){
+		assertPerft(play(7, CAPTURES_7X7), 22L, 720L, 18962L, 631492L);
+	}
+	
+	@Test
+	public void repetitionsAreNotCounted(){
+		//The shortest repetitions come back to a position after 4 plies.
+		Board board = new Board(5);
+		board.setRepetitionLimit(2);
+		assertEquals(1075344L, Perft.perft(board, 5));
+	}
+	
+	@Test
+	public void parallelMatchesSerial(){
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try{
+			assertEquals(239530L, Perft.parallelPerft(play(9, CAPTURES_9X9), 3, pool));
+			assertEquals(115862L, Perft.parallelPerft(play(9, ENDGAME_9X9), 3, pool));
+		}finally{
+			pool.shutdown();
+		}
+	}
+	
+	private static Board play(int size, String[] moves){
+		Board board = new Board(size);
+		for(String text : moves){
+			HasamiMove move = HasamiMove.parse(text, size);
+			if(!board.getMoves().contains(move))
+				throw new IllegalArgumentException("Invalid move: "+text);
+			board.makeMove(move);
+		}
+		return board;
+	}
+	
+	/**
+	 * Checks the counts at depths 1 to expected.length, and that playing and
+	 * undoing the whole tree leaves the board as it was.
+	 */
+	private static void assertPerft(Board board, long... expected){
+		long[] white = board.bitboard(Color.WHITE).clone();
+		long[] black = board.bitboard(Color.BLACK).clone();
+		long hash = board.getHash();
+		for(int depth=1; depth <= expected.length; depth++){
+			assertEquals("perft("+depth+")", expected[depth-1], Perft.perft(board, depth));
+		}
+		assertArrayEquals(white, board.bitboard(Color.WHITE));
+		assertArrayEquals(black, board.bitboard(Color.BLACK));
+		assertEquals(hash, board.getHash());
+	}
+	
+}//end class.
@@ -0,0 +1,93 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import hasami.Board.Color;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class PositionCodecTest {
+
+	@Test
+	public void roundTrip(){
+		Board board = new Board(9);
+		board.makeMove(HasamiMove.parse("a1-a5", 9));
+		ByteBuffer buffer = ByteBuffer.allocate(PositionCodec.encodedLength(9));
+		PositionCodec.encode(board, buffer);
+		assertEquals(23, buffer.position());
+		buffer.flip();
+		Board decoded = PositionCodec.decode(buffer);
+		assertEquals(board.getHash(), decoded.getHash());
+		assertArrayEquals(board.bitboard(Color.WHITE), decoded.bitboard(Color.WHITE));
+		assertArrayEquals(board.bitboard(Color.BLACK), decoded.bitboard(Color.BLACK));
+	}
+	
+	@Test
+	public void decodesMovesAfterARepetition(){
+		Board board = new Board(9);
+		for(int i=0; i < 2; i++){
+			for(String move : new String[]{"a1-a2", "a9-a8", "a2-a1", "a8-a9"}){
+				board.makeMove(HasamiMove.parse(move, 9));
+			}
+		}
+		assertTrue(board.isDraw());
+		int move = PositionCodec.decodeMove(board, PositionCodec.encodeMove(board.encodeMove(HasamiMove.parse("b1-b5", 9))));
+		assertEquals(HasamiMove.parse("b1-b5", 9), board.toHasamiMove(move));
+	}
+	
+	@Test
+	public void rejectsTooManyPieces(){
+		ByteBuffer buffer = encodedStart();
+		//White starts on squares 0-8: add square 40.
+		buffer.put(1 + 5, (byte) (buffer.get(1 + 5) | 1));
+		assertCorrupt(buffer);
+	}
+	
+	@Test
+	public void rejectsSquaresOffTheBoard(){
+		ByteBuffer buffer = encodedStart();
+		//Square 81 is the second bit of the last white mask byte.
+		buffer.put(1 + 10, (byte) 2);
+		assertCorrupt(buffer);
+	}
+	
+	private static ByteBuffer encodedStart(){
+		ByteBuffer buffer = ByteBuffer.allocate(PositionCodec.encodedLength(9));
+		PositionCodec.encode(new Board(9), buffer);
+		buffer.flip();
+		return buffer;
+	}
+	
+	private static void assertCorrupt(ByteBuffer buffer){
+		try{
+			PositionCodec.decode(buffer);
+			fail("Corrupt position decoded");
+		}catch(IllegalArgumentException expected){
+		}
+	}
+	
+}//end class.
@@ -0,0 +1,132 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RepetitionTest {
+
+	private static final String[] SHUFFLE = {"a1-a2", "a9-a8", "a2-a1", "a8-a9"};
+	
+	@Test
+	public void threefoldRepetitionDraws(){
+		Board board = new Board(9);
+		play(board, SHUFFLE);
+		assertTrue(board.isRepetition());
+		assertEquals(1, board.repetitions());
+		assertFalse(board.isDraw());
+		assertFalse(board.isGameOver());
+		play(board, SHUFFLE);
+		assertEquals(2, board.repetitions());
+		assertTrue(board.isDraw());
+		assertTrue(board.isGameOver());
+		assertFalse(board.hasWinner());
+		
+		board.undoMove(HasamiMove.parse("a8-a9", 9));
+		assertFalse(board.isDraw());
+	}
+	
+	@Test
+	public void limitZeroDisablesTheRule(){
+		Board board = new Board(9);
+		board.setRepetitionLimit(0);
+		play(board, SHUFFLE);
+		play(board, SHUFFLE);
+		play(board, SHUFFLE);
+		assertFalse(board.isDraw());
+		assertFalse(board.isGameOver());
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void limitOneIsRejected(){
+		new Board(9).setRepetitionLimit(1);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void negativeLimitIsRejected(){
+		new Board(9).setRepetitionLimit(-3);
+	}
+	
+	@Test
+	public void drawnRootScoresAsDraw(){
+		Board board = new Board(9);
+		play(board, SHUFFLE);
+		play(board, SHUFFLE);
+		Engine engine = new Engine(2, new SearchOptions());
+		try{
+			SearchResult result = engine.search(board, board.currentPlayer(), 2, 0);
+			assertEquals(0, result.score, 0);
+		}finally{
+			engine.shutdown();
+		}
+	}
+	
+	@Test
+	public void quietPliesAdjudicateADraw(){
+		Tournament tournament = new Tournament();
+		tournament.openingPlies = 0;
+		//No capture is possible in the first two plies.
+		tournament.quietPlies = 2;
+		tournament.a.depth = 1;
+		tournament.b.depth = 1;
+		Engine engineA = new Engine(1, tournament.a.options);
+		Engine engineB = new Engine(1, tournament.b.options);
+		try{
+			String[] fields = tournament.play(0, engineA, engineB).split("\t");
+			assertEquals("1/2", fields[2]);
+			assertEquals("quietplies", fields[3]);
+			assertEquals("2", fields[4]);
+			assertEquals(1, tournament.getDraws());
+		}finally{
+			engineA.shutdown();
+			engineB.shutdown();
+		}
+	}
+	
+	@Test
+	public void maxPliesZeroDisablesTheRule(){
+		Tournament tournament = new Tournament();
+		tournament.maxPlies = 0;
+		tournament.quietPlies = 0;
+		tournament.a.depth = 1;
+		tournament.b.depth = 1;
+		Engine engineA = new Engine(1, tournament.a.options);
+		Engine engineB = new Engine(1, tournament.b.options);
+		try{
+			String[] fields = tournament.play(0, engineA, engineB).split("\t");
+			assertFalse(fields[3].equals("maxplies"));
+			assertTrue(Integer.parseInt(fields[4]) > tournament.openingPlies);
+		}finally{
+			engineA.shutdown();
+			engineB.shutdown();
+		}
+	}
+	
+	private static void play(Board board, String[] moves){
+		for(String move : moves){
+			board.makeMove(HasamiMove.parse(move, board.getBoardSize()));
+		}
+	}
+	
+}//end class.
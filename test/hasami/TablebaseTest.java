@@ -0,0 +1,209 @@
+/**
+ Java implementation of a computer engine to play the 
+ Hasami Shogi game. See: http://en.wikipedia.org/wiki/Hasami_shogi
+
+ Copyright (C) 2010 Flavio Regis de Arruda <https://bitbucket.org/flavio_regis>
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package hasami;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import hasami.Board.Color;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks the generated 4x4 tables of 2v2 and 2v3 against a solver that
+ * applies the rules of the table values to the whole position graph, level
+ * after level, without the generator's index or retrograde marking.
+ */
+public class TablebaseTest {
+
+	private static final int SIZE = 4;
+	private static final int SQUARES = SIZE*SIZE;
+	private static final int LOST_NOW = -1;
+	
+	private static File directory;
+	private static Tablebase tablebase;
+	
+	@BeforeClass
+	public static void generate() throws IOException, InterruptedException {
+		directory = File.createTempFile("tablebase", "");
+		directory.delete();
+		directory.mkdir();
+		new TablebaseGenerator(SIZE, directory, 2).generateAll(5);
+		tablebase = new Tablebase(directory);
+	}
+	
+	@AfterClass
+	public static void delete(){
+		for(File file : directory.listFiles()){
+			file.delete();
+		}
+		directory.delete();
+	}
+	
+	@Test
+	public void indexRoundTrips(){
+		indexRoundTrips(2, 2);
+		indexRoundTrips(2, 3);
+	}
+	
+	private static void indexRoundTrips(int a, int b){
+		int[] first = new int[a];
+		int[] second = new int[b];
+		long entries = Tablebase.entries(SIZE, a, b);
+		for(long index=0; index < entries; index++){
+			int side = Tablebase.unindex(index, SIZE, first, second);
+			long[] firstSquares = new long[2];
+			long[] secondSquares = new long[2];
+			for(int i=0; i < a; i++){
+				assertTrue(first[i] >= 0 && first[i] < SQUARES && (i == 0 || first[i] > first[i-1]));
+				firstSquares[0] |= 1L << first[i];
+			}
+			for(int i=0; i < b; i++){
+				assertTrue(second[i] >= 0 && second[i] < SQUARES && (i == 0 || second[i] > second[i-1]));
+				secondSquares[0] |= 1L << second[i];
+			}
+			assertEquals(0, firstSquares[0] & secondSquares[0]);
+			assertEquals(index, Tablebase.index(firstSquares, secondSquares, side, SIZE, a, b));
+		}
+	}
+	
+	@Test
+	public void everyValueMatchesTheSolver(){
+		Map<Long, Integer> solved = solve();
+		assertEquals(2*Tablebase.entries(SIZE, 2, 3) + Tablebase.entries(SIZE, 2, 2), solved.size());
+		Board board = new Board(SIZE);
+		int wins = 0, losses = 0;
+		for(Map.Entry<Long, Integer> position : solved.entrySet()){
+			setPosition(board, position.getKey());
+			int value = tablebase.probe(board);
+			assertEquals("position "+Long.toHexString(position.getKey()), (int) position.getValue(), value);
+			wins += Tablebase.isWin(value) ? 1 : 0;
+			losses += Tablebase.isLoss(value) ? 1 : 0;
+		}
+		assertTrue(wins > 0 && losses > 0);
+	}
+	
+	/**
+	 * The value of every position with two or three pieces a side and at
+	 * most five in all, keyed by key().
+	 */
+	private static Map<Long, Integer> solve(){
+		long[] keys = new long[(int) (2*Tablebase.entries(SIZE, 2, 3) + Tablebase.entries(SIZE, 2, 2))];
+		int count = 0;
+		for(int white=0; white < 1 << SQUARES; white++){
+			int w = Integer.bitCount(white);
+			if(w < 2 || w > 3)
+				continue;
+			int free = ~white & (1 << SQUARES)-1;
+			for(int black=free; black != 0; black=(black-1) & free){
+				int b = Integer.bitCount(black);
+				if(b < 2 || w + b > 5)
+					continue;
+				keys[count++] = key(white, black, 0);
+				keys[count++] = key(white, black, 1);
+			}
+		}
+		assertEquals(keys.length, count);
+		Map<Long, Integer> numbers = new HashMap<Long, Integer>();
+		for(int i=0; i < keys.length; i++){
+			numbers.put(keys[i], i);
+		}
+		
+		//The positions each move leads to, or LOST_NOW when the side to move there has one piece left.
+		int[][] children = new int[keys.length][];
+		Board board = new Board(SIZE);
+		int[] moves = new int[board.getMaxMoves()];
+		for(int i=0; i < keys.length; i++){
+			setPosition(board, keys[i]);
+			int moveCount = board.generateMoves(moves);
+			children[i] = new int[moveCount];
+			for(int m=0; m < moveCount; m++){
+				board.makeMove(moves[m]);
+				children[i][m] = board.pieceCount(board.currentPlayer()) < 2 ? LOST_NOW : numbers.get(key(board));
+				board.undoMove(moves[m]);
+			}
+		}
+		
+		//values[i]: 0 while open, plies+1 once decided, odd plies winning for the side to move.
+		int[] values = new int[keys.length];
+		for(int i=0; i < keys.length; i++){
+			if(children[i].length == 0)
+				values[i] = 1;
+		}
+		for(int level=1; level <= Tablebase.MAX_PLIES; level++){
+			int decided = 0;
+			for(int i=0; i < keys.length; i++){
+				if(values[i] != 0)
+					continue;
+				boolean win = false;
+				boolean allWon = true;
+				for(int child : children[i]){
+					int value = child == LOST_NOW ? 1 : values[child];
+					int plies = value - 1;
+					if(value == 0 || plies >= level)
+						allWon = false;
+					else if(plies % 2 == 0)
+						win = true;
+				}
+				if(win || allWon){
+					values[i] = level+1;
+					decided++;
+				}
+			}
+			if(decided == 0)
+				break;
+		}
+		
+		Map<Long, Integer> solved = new HashMap<Long, Integer>();
+		for(int i=0; i < keys.length; i++){
+			solved.put(keys[i], values[i]);
+		}
+		return solved;
+	}
+	
+	private static long key(long white, long black, int side){
+		return white | black << SQUARES | (long) side << 2*SQUARES;
+	}
+	
+	private static long key(Board board){
+		return key(board.bitboard(Color.WHITE)[0], board.bitboard(Color.BLACK)[0], board.currentPlayer() == Color.WHITE ? 0 : 1);
+	}
+	
+	private static void setPosition(Board board, long key){
+		board.setPosition(squares(key & 0xFFFF), squares(key >>> SQUARES & 0xFFFF),
+				(key >>> 2*SQUARES) == 0 ? Color.WHITE : Color.BLACK);
+	}
+	
+	private static int[] squares(long mask){
+		int[] squares = new int[Long.bitCount(mask)];
+		for(int i=0; mask != 0; mask &= mask-1){
+			squares[i++] = Long.numberOfTrailingZeros(mask);
+		}
+		return squares;
+	}
+	
+}//end class.